@@ -19,12 +19,15 @@ import io.github.ghacupha.keeper.book.balance.AccountBalance;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.AccountAppraisalDelegate;
 import io.github.ghacupha.keeper.book.base.AccountDetails;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
 import io.github.ghacupha.time.point.TimePoint;
 
 import java.util.Currency;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * A collection of {@link Entry} items.
@@ -43,6 +46,66 @@ public interface Account {
      */
     void addEntry(Entry entry) throws MismatchedCurrencyException, UntimelyBookingDateException;
 
+    /**
+     * Adds a batch of entries, which is the same as adding each in turn except that implementations may check the
+     * whole batch first and then append it in one go, in which case none of the entries is added if any of them
+     * is refused
+     *
+     * @param entries {@link Entry} items to be added to this
+     */
+    default void addEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        for (Entry entry : entries) {
+            addEntry(entry);
+        }
+    }
+
+    /**
+     * Checks that the entries could be added to this as they are, without adding them. A {@link Transaction} checks
+     * every account it is posted to in this way, while holding the accounts' posting locks, before adding any entry
+     * so that it is posted either to all of its accounts or to none.
+     * Implementations which keep closed periods should also refuse entries booked in a closed period
+     *
+     * @param entries {@link Entry} items which would be added to this
+     * @throws MismatchedCurrencyException if any of the entries is in a currency other than that of this
+     * @throws UntimelyBookingDateException if any of the entries is booked before the account was opened, or on a date
+     * which cannot be kept as a day number, see {@link EpochDays#supports(TimePoint)}
+     */
+    default void checkEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        for (Entry entry : entries) {
+
+            if (!EpochDays.supports(entry.getBookingDate())) {
+                throw new UntimelyBookingDateException(String.format("The booking date %s is not a calendar date from the year 0 to 9999", entry.getBookingDate()));
+            }
+
+            if (entry.getBookingDate().before(getOpeningDate())) {
+                throw new UntimelyBookingDateException(String.format("The booking date cannot be earlier than the account opening date : Opening date : %s . The entry date was %s", getOpeningDate(), entry.getBookingDate()));
+            }
+
+            if (!getCurrency().equals(entry.getAmount().getCurrency())) {
+                throw new MismatchedCurrencyException(String.format("Currencies mismatched :Expected getCurrency : %s but found entry denominated in %s", getCurrency(), entry.getAmount().getCurrency()));
+            }
+        }
+    }
+
+    /**
+     * Closes the accounting period ending on the closing date. The balance as at the closing date is recorded as a
+     * checkpoint from which later balances are computed, and from then on no {@link Entry} can be booked on or before
+     * the closing date
+     *
+     * @param closingDate {@link TimePoint} of the last day of the period being closed
+     * @return {@link AccountBalance} as at the closing date
+     * @throws UntimelyBookingDateException if the closing date is before the opening date of the account, or not
+     * later than the closing date of a period already closed
+     * @throws UnsupportedOperationException if the account does not keep accounting periods, which is the case unless
+     * the implementation says otherwise
+     */
+    default AccountBalance closePeriod(TimePoint closingDate) throws UntimelyBookingDateException {
+
+        throw new UnsupportedOperationException("This account does not keep accounting periods");
+    }
+
     /**
      * Returns the balance of the Account
      * @param asAt {@link TimePoint} at which is Effective
@@ -63,6 +126,35 @@ public interface Account {
      */
     AccountBalance balance(int... asAt);
 
+    /**
+     * The balance of the Account as a plain number, for callers such as reports that deal with many accounts at a
+     * time and would rather not have an {@link AccountBalance} made for each of them
+     *
+     * @param asAt {@link TimePoint} at which is Effective
+     * @return Debits less credits as at the date, in minor units of the account's {@link Currency}. A positive number
+     * is a {@link AccountSide#DEBIT} balance and a negative one a {@link AccountSide#CREDIT} balance
+     */
+    default long balanceMinorUnits(TimePoint asAt) {
+
+        AccountBalance balance = balance(asAt);
+
+        long amount = MinorUnits.of(balance.getAmount());
+
+        return balance.getAccountSide() == AccountSide.DEBIT ? amount : -amount;
+    }
+
+    /**
+     * Balances of the Account as at each of the dates given, which is the same as asking for the {@link #balance(TimePoint)}
+     * as at each date, but implementations may well take all of the balances in one go
+     *
+     * @param asAt {@link TimePoint} dates as at which balances are wanted, in any order
+     * @return {@link AccountBalance} as at each date, in the order the dates were given
+     */
+    default List<AccountBalance> balances(List<TimePoint> asAt) {
+
+        return asAt.stream().map(this::balance).collect(Collectors.toList());
+    }
+
     /**
      *
      * @return Currency of the account
@@ -87,7 +179,7 @@ public interface Account {
 
     /**
      *
-     * @return Returns this object's current copy of the {@link Entry} items
+     * @return Returns a read-only view of this object's {@link Entry} items
      */
     List<Entry> getEntries();
 
@@ -18,6 +18,7 @@ package io.github.ghacupha.keeper.book.api;
 import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.EntryDetails;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.time.point.TimePoint;
 
 import java.util.Currency;
@@ -61,6 +62,16 @@ public interface Entry {
      */
     Cash getAmount();
 
+    /**
+     *
+     * @return The amount of the Entry as an exact number of minor units of its {@link Currency}, which is what
+     * balances are summed up in
+     */
+    default long getAmountMinorUnits() {
+
+        return MinorUnits.of(getAmount());
+    }
+
     /**
      * Assigns this Entry with a specific account into which it is aggregated as
      * {@code AccountBalance}
@@ -20,9 +20,13 @@ import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.EntryDetails;
 import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.PostingExecutor;
 import io.github.ghacupha.keeper.book.util.UnableToPostException;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A collection of {@link Entry} items being posted at the same time
@@ -53,8 +57,69 @@ public interface Transaction {
     void post() throws UnableToPostException, ImmutableEntryException;
 
     /**
+     * Posts the Transaction on the {@link PostingExecutor#getDefault() default posting executor}
      *
-     * @return Collection of {@link Entry} items in the Transaction
+     * @return {@link CompletableFuture} completed with this Transaction once posted, or exceptionally with the
+     * {@link UnableToPostException} or {@link ImmutableEntryException} {@link #post()} would have thrown
+     */
+    default CompletableFuture<Transaction> postAsync() {
+
+        return postAsync(PostingExecutor.getDefault());
+    }
+
+    /**
+     * Posts the Transaction on the executor given, so that the caller can go on with other postings meanwhile
+     *
+     * @param executor {@link Executor} on which {@link #post()} is run
+     * @return {@link CompletableFuture} completed with this Transaction once posted, or exceptionally with the
+     * {@link UnableToPostException} or {@link ImmutableEntryException} {@link #post()} would have thrown
+     */
+    default CompletableFuture<Transaction> postAsync(Executor executor) {
+
+        CompletableFuture<Transaction> posted = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    post();
+                    posted.complete(this);
+                } catch (UnableToPostException | ImmutableEntryException | RuntimeException e) {
+                    posted.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            posted.completeExceptionally(e);
+        }
+
+        return posted;
+    }
+
+    /**
+     *
+     * @return Read-only view of the {@link Entry} items in the Transaction
      */
     Set<Entry> getEntries();
+
+    /**
+     * @return Debits less credits of the {@link Entry} items in minor units of the currency, which is nought when the
+     * transaction is balanced. Implementations should keep the totals as entries are added rather than go through
+     * the entries every time
+     */
+    default long imbalance() {
+
+        long imbalance = 0;
+
+        for (Entry entry : getEntries()) {
+            imbalance += entry.getAccountSide() == AccountSide.DEBIT ? entry.getAmountMinorUnits() : -entry.getAmountMinorUnits();
+        }
+
+        return imbalance;
+    }
+
+    /**
+     * @return true if the debits of the Transaction add up to its credits, so that it can be posted
+     */
+    default boolean isBalanced() {
+        return imbalance() == 0;
+    }
 }
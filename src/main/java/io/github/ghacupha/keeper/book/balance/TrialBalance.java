@@ -0,0 +1,292 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.balance;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.base.PostingLocks;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Balances of a chart of {@link Account} items as at some date, and whether the debit balances add up to the credit
+ * balances as they should.
+ * The balances are taken in parallel, when the default {@link ExecutionPolicy} says so, by splitting the accounts in
+ * halves through the fork-join framework until there are few enough for a single thread to take. Each balance is kept
+ * as a number of minor units in an array indexed like the accounts, so that no {@link AccountBalance} need be made
+ * for any account unless it is asked for.
+ * The balances are taken under the read {@link PostingLocks} of the accounts, so that a trial balance never catches a
+ * transaction with some of its legs posted and others not. The tasks taking them run in a pool of their own rather
+ * than in the policy's, where postings waiting on those locks could take up every worker while the tasks that would
+ * let the locks go wait behind them.
+ *
+ * @author edwin.njeru
+ */
+public final class TrialBalance {
+
+    private static final Logger log = LoggerFactory.getLogger(TrialBalance.class);
+
+    // number of accounts a single fork-join task takes without splitting further
+    private static final int ACCOUNTS_PER_TASK = 512;
+
+    private final List<Account> accounts;
+
+    private final TimePoint asAt;
+
+    private final Currency currency;
+
+    // debits less credits of each account in minor units
+    private final long[] balances;
+
+    private final long totalDebits;
+
+    private final long totalCredits;
+
+    private TrialBalance(List<Account> accounts, TimePoint asAt, Currency currency, long[] balances) {
+        this.accounts = accounts;
+        this.asAt = asAt;
+        this.currency = currency;
+        this.balances = balances;
+
+        long debits = 0;
+        long credits = 0;
+
+        for (long balance : balances) {
+            if (balance > 0) {
+                debits += balance;
+            } else {
+                credits -= balance;
+            }
+        }
+
+        this.totalDebits = debits;
+        this.totalCredits = credits;
+    }
+
+    /**
+     * @param accounts {@link Account} items in the trial balance, all in the same {@link Currency}
+     * @param asAt {@link TimePoint} as at which the accounts are balanced
+     * @return {@link TrialBalance} of the accounts
+     * @throws MismatchedCurrencyException if the accounts are not all in the same {@link Currency}
+     */
+    @SuppressWarnings("try")
+    public static TrialBalance of(Collection<? extends Account> accounts, TimePoint asAt) throws MismatchedCurrencyException {
+
+        if (accounts.isEmpty()) {
+            throw new IllegalArgumentException("A trial balance needs at least one account");
+        }
+
+        List<Account> chart = Collections.unmodifiableList(new ArrayList<>(accounts));
+
+        Currency currency = chart.get(0).getCurrency();
+
+        for (Account account : chart) {
+            if (!currency.equals(account.getCurrency())) {
+                throw new MismatchedCurrencyException(String.format("Cannot take a trial balance of accounts in %s together with account %s in %s", currency, account, account.getCurrency()));
+            }
+        }
+
+        log.debug("Taking trial balance of {} accounts as at {}", chart.size(), asAt);
+
+        long[] balances = new long[chart.size()];
+
+        ExecutionPolicy policy = ExecutionPolicy.getDefault();
+
+        // no transaction can be half way through posting to the chart while its balances are taken
+        try (PostingLocks.Hold ignored = PostingLocks.forReading(chart)) {
+
+            if (policy.isParallel(chart.size())) {
+
+                BalancingPool.POOL.invoke(new BalancingTask(chart, asAt, balances, 0, chart.size()));
+
+            } else {
+
+                for (int i = 0; i < balances.length; i++) {
+                    balances[i] = chart.get(i).balanceMinorUnits(asAt);
+                }
+            }
+        }
+
+        TrialBalance trialBalance = new TrialBalance(chart, asAt, currency, balances);
+
+        log.debug("Trial balance as at {} : {}", asAt, trialBalance);
+
+        return trialBalance;
+    }
+
+    /**
+     * @return true if the debit balances add up to the credit balances
+     */
+    public boolean isBalanced() {
+        return totalDebits == totalCredits;
+    }
+
+    /**
+     * @return Sum of the debit balances
+     */
+    public Cash getTotalDebits() {
+        return MinorUnits.toCash(totalDebits, currency);
+    }
+
+    /**
+     * @return Sum of the credit balances
+     */
+    public Cash getTotalCredits() {
+        return MinorUnits.toCash(totalCredits, currency);
+    }
+
+    /**
+     * @return Sum of the debit balances in minor units
+     */
+    public long getTotalDebitsMinorUnits() {
+        return totalDebits;
+    }
+
+    /**
+     * @return Sum of the credit balances in minor units
+     */
+    public long getTotalCreditsMinorUnits() {
+        return totalCredits;
+    }
+
+    /**
+     * @return Number of accounts in the trial balance
+     */
+    public int size() {
+        return balances.length;
+    }
+
+    /**
+     * @param index Position of the account in the collection from which the trial balance was taken
+     * @return {@link Account} at the position
+     */
+    public Account getAccount(int index) {
+        return accounts.get(index);
+    }
+
+    /**
+     * @param index Position of the account in the collection from which the trial balance was taken
+     * @return Debits less credits of the account in minor units
+     */
+    public long getBalanceMinorUnits(int index) {
+        return balances[index];
+    }
+
+    /**
+     * @param index Position of the account in the collection from which the trial balance was taken
+     * @return {@link AccountBalance} of the account, made on demand
+     */
+    public AccountBalance getAccountBalance(int index) {
+
+        long balance = balances[index];
+
+        if (balance == 0) {
+            return new AccountBalance(MinorUnits.toCash(0, currency), accounts.get(index).getAccountSide());
+        }
+
+        return new AccountBalance(MinorUnits.toCash(Math.abs(balance), currency), balance > 0 ? DEBIT : CREDIT);
+    }
+
+    public TimePoint getAsAt() {
+        return asAt;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+        sb.append("asAt=").append(asAt);
+        sb.append(", accounts=").append(balances.length);
+        sb.append(", debits=").append(getTotalDebits());
+        sb.append(", credits=").append(getTotalCredits());
+        sb.append(", balanced=").append(isBalanced());
+        sb.append('}');
+        return sb.toString();
+    }
+
+    /*
+     * Pool in which nothing but balancing tasks ever runs, made when the first trial balance goes parallel
+     */
+    private static final class BalancingPool {
+
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName("trial-balance-" + worker.getPoolIndex());
+
+            return worker;
+
+        }, null, false);
+    }
+
+    /**
+     * Balances the accounts in [from, to), splitting the range in two until it is small enough
+     */
+    private static final class BalancingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 4460722154307946163L;
+
+        private final List<Account> accounts;
+        private final TimePoint asAt;
+        private final long[] balances;
+        private final int from;
+        private final int to;
+
+        BalancingTask(List<Account> accounts, TimePoint asAt, long[] balances, int from, int to) {
+            this.accounts = accounts;
+            this.asAt = asAt;
+            this.balances = balances;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= ACCOUNTS_PER_TASK) {
+
+                for (int i = from; i < to; i++) {
+                    balances[i] = accounts.get(i).balanceMinorUnits(asAt);
+                }
+
+            } else {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new BalancingTask(accounts, asAt, balances, from, middle), new BalancingTask(accounts, asAt, balances, middle, to));
+            }
+        }
+    }
+}
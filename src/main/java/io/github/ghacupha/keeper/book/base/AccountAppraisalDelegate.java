@@ -15,6 +15,7 @@
  */
 package io.github.ghacupha.keeper.book.base;
 
+import com.google.common.collect.Iterators;
 import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.cash.HardCash;
 import io.github.ghacupha.keeper.book.api.Account;
@@ -24,9 +25,22 @@ import io.github.ghacupha.keeper.book.balance.AccountSide;
 import io.github.ghacupha.keeper.book.base.state.AccountCreditState;
 import io.github.ghacupha.keeper.book.base.state.AccountDebitState;
 import io.github.ghacupha.keeper.book.base.state.AccountState;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.time.point.DateRange;
+import io.github.ghacupha.time.point.TimePoint;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
 
 import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
@@ -44,25 +58,461 @@ public class AccountAppraisalDelegate {
 
     private final Account account;
 
-    private AccountState accountSideState;
-
     private final AccountState debitAccountState;
     private final AccountState creditAccountState;
 
+    // null if the account does not maintain an index of its entries
+    private final BookingDateIndex bookingDateIndex;
+
+    // the entries as held by the account, so that scanning them does not cost a copy
+    private final Supplier<? extends List<Entry>> entries;
+
+    // null unless the account keeps its entries in columns, which are then scanned instead of the entries
+    private final EntryStore entryStore;
+
+    // closed periods by the epoch day of their closing date
+    private final NavigableMap<Integer, Checkpoint> checkpoints = new ConcurrentSkipListMap<>();
+
     AccountAppraisalDelegate(Account account) {
 
+        this(account, account::getEntries, null);
+    }
+
+    AccountAppraisalDelegate(Account account, Supplier<? extends List<Entry>> entries, BookingDateIndex bookingDateIndex) {
+
+        this(account, entries, bookingDateIndex, null);
+    }
+
+    AccountAppraisalDelegate(Account account, EntryStore entryStore) {
+
+        this(account, entryStore::entries, null, entryStore);
+    }
+
+    private AccountAppraisalDelegate(Account account, Supplier<? extends List<Entry>> entries, BookingDateIndex bookingDateIndex, EntryStore entryStore) {
+
         this.account = account;
+        this.entries = entries;
+        this.bookingDateIndex = bookingDateIndex;
+        this.entryStore = entryStore;
         debitAccountState = new AccountDebitState(this.account);
         creditAccountState = new AccountCreditState(this.account);
+    }
+
+    /**
+     * Balance of the {@link Account} as at the date given, taking into account all entries booked from the opening
+     * date of the account. If the account maintains a {@link BookingDateIndex} this is answered from the index in
+     * O(log d), otherwise by a full scan of the entries, or of the columns of its {@link EntryStore}
+     *
+     * @param asAt {@link TimePoint} as at which the balance is effective
+     * @return {@link AccountBalance} as at the date
+     */
+    public AccountBalance balance(TimePoint asAt){
+
+        if (bookingDateIndex == null) {
 
-        this.accountSideState = account.getAccountSide() == DEBIT ? debitAccountState : creditAccountState;
+            return scan(asAt);
+        }
+
+        BookingDateIndex.Sums sums = bookingDateIndex.sumsAsAt(asAt);
+
+        return balance(sums.getDebits(), sums.getCredits());
     }
 
+    /**
+     * Balances of the {@link Account} as at each of the dates given. The dates are sorted and the balances taken in
+     * one go, from the {@link BookingDateIndex} if the account maintains one, and otherwise from a single pass over the
+     * entries in which each entry is added to the earliest date it falls before, so that however many dates are
+     * asked for the entries are only gone through once
+     *
+     * @param asAt {@link TimePoint} dates as at which balances are wanted, in any order
+     * @return {@link AccountBalance} as at each date, in the order the dates were given
+     */
+    public List<AccountBalance> balances(List<TimePoint> asAt){
+
+        int count = asAt.size();
+
+        Integer[] order = new Integer[count];
+        int[] days = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            days[i] = EpochDays.of(asAt.get(i));
+        }
+
+        Arrays.sort(order, Comparator.comparingInt(i -> days[i]));
+
+        int[] sortedDays = new int[count];
+        TimePoint[] sortedDates = new TimePoint[count];
+
+        for (int i = 0; i < count; i++) {
+            sortedDays[i] = days[order[i]];
+            sortedDates[i] = asAt.get(order[i]);
+        }
+
+        long[] debits = new long[count];
+        long[] credits = new long[count];
+
+        if (bookingDateIndex != null) {
+
+            BookingDateIndex.Sums[] sums = bookingDateIndex.sumsAsAt(sortedDays);
+
+            for (int i = 0; i < count; i++) {
+                debits[i] = sums[i].getDebits();
+                credits[i] = sums[i].getCredits();
+            }
+
+        } else if (entryStore != null) {
+
+            int openingDay = EpochDays.of(account.getOpeningDate());
+
+            int size = entryStore.size();
+
+            for (int position = 0; position < size; position++) {
+
+                int day = entryStore.bookingDay(position);
+
+                int first = earliestNotBefore(sortedDays, day);
+
+                if (first < count && day >= openingDay) {
+
+                    if (entryStore.isDebit(position)) {
+                        debits[first] += entryStore.amountMinorUnits(position);
+                    } else {
+                        credits[first] += entryStore.amountMinorUnits(position);
+                    }
+                }
+            }
+
+            for (int i = 1; i < count; i++) {
+                debits[i] += debits[i - 1];
+                credits[i] += credits[i - 1];
+            }
+
+        } else {
+
+            TimePoint openingDate = account.getOpeningDate();
+
+            for (Entry entry : entries.get()) {
+
+                TimePoint bookingDate = entry.getBookingDate();
+
+                int first = earliestNotBefore(sortedDates, bookingDate);
+
+                if (first < count && !bookingDate.before(openingDate)) {
+
+                    if (entry.getAccountSide() == DEBIT) {
+                        debits[first] += entry.getAmountMinorUnits();
+                    } else {
+                        credits[first] += entry.getAmountMinorUnits();
+                    }
+                }
+            }
+
+            // entries were added to the earliest date only, every later date includes them too
+            for (int i = 1; i < count; i++) {
+                debits[i] += debits[i - 1];
+                credits[i] += credits[i - 1];
+            }
+        }
+
+        AccountBalance[] balances = new AccountBalance[count];
+
+        for (int i = 0; i < count; i++) {
+            balances[order[i]] = balance(debits[i], credits[i]);
+        }
+
+        return Arrays.asList(balances);
+    }
+
+    /*
+     * Binary search for the first of the sorted dates which is not before the booking date, or the number of dates
+     * if the entry was booked after all of them
+     */
+    private static int earliestNotBefore(TimePoint[] sortedDates, TimePoint bookingDate) {
+
+        int low = 0;
+        int high = sortedDates.length;
+
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (sortedDates[middle].before(bookingDate)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /*
+     * Same as the above for sorted epoch days
+     */
+    private static int earliestNotBefore(int[] sortedDays, int bookingDay) {
+
+        int low = 0;
+        int high = sortedDays.length;
+
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (sortedDays[middle] < bookingDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Balance of the {@link Account} as at the date given, from the latest period closed on or before the date, and
+     * a scan of the entries of the periods since. Without a closed period this is a scan of all the entries
+     *
+     * @param asAt {@link TimePoint} as at which the balance is effective
+     * @return {@link AccountBalance} as at the date
+     */
+    AccountBalance scan(TimePoint asAt){
+
+        Map.Entry<Integer, Checkpoint> latest = checkpoints.floorEntry(EpochDays.of(asAt));
+
+        if (entryStore != null) {
+
+            return scanStore(asAt, latest == null ? null : latest.getValue());
+        }
+
+        if (latest == null) {
+
+            return balance(new DateRange(account.getOpeningDate(), asAt));
+        }
+
+        Checkpoint checkpoint = latest.getValue();
+
+        long debits = checkpoint.getDebits();
+        long credits = checkpoint.getCredits();
+
+        List<Entry> accountEntries = entries.get();
+
+        for (Entry entry : openPeriod(checkpoint, accountEntries)) {
+
+            if (!entry.getBookingDate().after(asAt)) {
+
+                if (entry.getAccountSide() == DEBIT) {
+                    debits += entry.getAmountMinorUnits();
+                } else {
+                    credits += entry.getAmountMinorUnits();
+                }
+            }
+        }
+
+        return balance(debits, credits);
+    }
+
+    /*
+     * The same scan over the columns of the entry store, in which the entries of the open period are the carried over
+     * ones and those from the checkpoint's entry count on
+     */
+    private AccountBalance scanStore(TimePoint asAt, Checkpoint checkpoint) {
+
+        long[] sums = new long[2];
+
+        int from = 0;
+        int firstDay = EpochDays.of(account.getOpeningDate());
+
+        if (checkpoint != null) {
+
+            sums[0] = checkpoint.getDebits();
+            sums[1] = checkpoint.getCredits();
+
+            for (Entry entry : checkpoint.getCarriedOver()) {
+
+                if (!entry.getBookingDate().after(asAt)) {
+                    sums[entry.getAccountSide() == DEBIT ? 0 : 1] += entry.getAmountMinorUnits();
+                }
+            }
+
+            from = checkpoint.getEntryCount();
+            firstDay = Integer.MIN_VALUE;
+        }
+
+        entryStore.sum(from, entryStore.size(), firstDay, EpochDays.of(asAt), sums);
+
+        return balance(sums[0], sums[1]);
+    }
+
+    /**
+     * Records a {@link Checkpoint} of the balance as at the closing date. The account must make sure that no entries
+     * are booked on or before the closing date from here on, and that none are added while the period is being closed
+     *
+     * @param closingDate {@link TimePoint} of the last day of the period being closed
+     * @return {@link AccountBalance} as at the closing date
+     */
+    AccountBalance closePeriod(TimePoint closingDate){
+
+        List<Entry> accountEntries = entries.get();
+
+        long debits = 0;
+        long credits = 0;
+
+        List<Entry> carriedOver = new ArrayList<>();
+
+        Checkpoint previous = checkpoints.isEmpty() ? null : checkpoints.lastEntry().getValue();
+
+        if (previous != null) {
+            debits = previous.getDebits();
+            credits = previous.getCredits();
+        }
+
+        int entryCount = accountEntries.size();
+
+        Iterable<Entry> openPeriod = previous == null ? accountEntries : openPeriod(previous, accountEntries);
+
+        if (entryStore != null) {
+
+            int closingDay = EpochDays.of(closingDate);
+
+            for (int position = previous == null ? 0 : previous.getEntryCount(); position < entryCount; position++) {
+
+                if (entryStore.bookingDay(position) > closingDay) {
+
+                    carriedOver.add(entryStore.entry(position));
+
+                } else if (entryStore.isDebit(position)) {
+                    debits += entryStore.amountMinorUnits(position);
+                } else {
+                    credits += entryStore.amountMinorUnits(position);
+                }
+            }
+
+            // what is left to go through are the entries carried over from the previous period
+            openPeriod = previous == null ? Collections.emptyList() : previous.getCarriedOver();
+        }
+
+        // the entries of the period being closed are those of the open period, just as for a balance enquiry
+        for (Entry entry : openPeriod) {
+
+            if (entry.getBookingDate().after(closingDate)) {
+
+                carriedOver.add(entry);
+
+            } else if (entry.getAccountSide() == DEBIT) {
+                debits += entry.getAmountMinorUnits();
+            } else {
+                credits += entry.getAmountMinorUnits();
+            }
+        }
+
+        checkpoints.put(EpochDays.of(closingDate), new Checkpoint(closingDate, debits, credits, entryCount, carriedOver));
+
+        return balance(debits, credits);
+    }
+
+    /**
+     * @return {@link TimePoint} closing date of the latest period closed, or null if none has been closed
+     */
+    TimePoint getLatestClosingDate(){
+
+        return checkpoints.isEmpty() ? null : checkpoints.lastEntry().getValue().getClosingDate();
+    }
+
+    /*
+     * The list iterators of the append log and of a copy-on-write list go over a snapshot of the list, which is why
+     * one is used instead of a sub list, which would fail if an entry were added while iterating
+     */
+    private static Iterable<Entry> openPeriod(Checkpoint checkpoint, List<Entry> accountEntries) {
+
+        return () -> Iterators.concat(checkpoint.getCarriedOver().iterator(), accountEntries.listIterator(checkpoint.getEntryCount()));
+    }
+
+    /**
+     * Full scan of the {@link Account}'s {@link Entry} items. This works for any {@link Account} implementation but
+     * costs a pass over every entry, so implementations that keep their own totals should only come here when
+     * those totals cannot answer the query
+     *
+     * @param dateRange {@link DateRange} within which booked entries are included in the balance
+     * @return {@link AccountBalance} of the entries booked within the range
+     */
     public AccountBalance balance(DateRange dateRange){
 
-        Cash debits = getDebits(dateRange,account.getEntries());
+        Collection<Entry> accountEntries = entries.get();
+
+        ExecutionPolicy policy = ExecutionPolicy.getDefault();
+
+        if (policy.isParallel(accountEntries.size())) {
+
+            // one pair of accumulators per forked chunk rather than per entry
+            long[] sums = policy.execute(accountEntries, () -> accountEntries.parallelStream()
+                .filter(entry -> dateRange.includes(entry.getBookingDate()))
+                .collect(() -> new long[2], (acc, entry) -> acc[entry.getAccountSide() == DEBIT ? 0 : 1] += entry.getAmountMinorUnits(), (left, right) -> {
+                    left[0] += right[0];
+                    left[1] += right[1];
+                }));
+
+            return balance(sums[0], sums[1]);
+        }
+
+        long debits = 0;
+        long credits = 0;
+
+        // single pass with exact primitive accumulators, nothing is allocated per entry
+        for (Entry entry : accountEntries) {
 
-        Cash credits = getCredits(dateRange, account.getEntries());
+            if (dateRange.includes(entry.getBookingDate())) {
+
+                if (entry.getAccountSide() == DEBIT) {
+                    debits += entry.getAmountMinorUnits();
+                } else {
+                    credits += entry.getAmountMinorUnits();
+                }
+            }
+        }
+
+        return balance(debits, credits);
+    }
+
+    /**
+     * Appraises the {@link AccountBalance} given debits and credits summed up in minor units of the currency
+     *
+     * @param debits Sum of the {@link AccountSide#DEBIT} entries in minor units
+     * @param credits Sum of the {@link AccountSide#CREDIT} entries in minor units
+     * @return {@link AccountBalance} of the {@link Account}
+     */
+    AccountBalance balance(long debits, long credits){
+
+        return balance(debits, credits, account.getAccountSide());
+    }
+
+    /**
+     * Appraises the {@link AccountBalance} given debits and credits summed up in minor units of the currency, for an
+     * account belonging by default to the side given, such as the side published together with the sums
+     *
+     * @param debits Sum of the {@link AccountSide#DEBIT} entries in minor units
+     * @param credits Sum of the {@link AccountSide#CREDIT} entries in minor units
+     * @param accountSide {@link AccountSide} to which the {@link Account} belongs by default
+     * @return {@link AccountBalance} of the {@link Account}
+     */
+    AccountBalance balance(long debits, long credits, AccountSide accountSide){
+
+        return balance(MinorUnits.toCash(debits, account.getCurrency()), MinorUnits.toCash(credits, account.getCurrency()), accountSide);
+    }
+
+    /**
+     * Appraises the {@link AccountBalance} given debits and credits which have already been summed up
+     *
+     * @param debits Sum of the {@link AccountSide#DEBIT} entries
+     * @param credits Sum of the {@link AccountSide#CREDIT} entries
+     * @return {@link AccountBalance} of the {@link Account}
+     */
+    AccountBalance balance(Cash debits, Cash credits){
+
+        return balance(debits, credits, account.getAccountSide());
+    }
+
+    private AccountBalance balance(Cash debits, Cash credits, AccountSide accountSide){
 
         if (debits.isZero() || credits.isZero()) {
             if(!debits.isZero() && credits.isZero()){
@@ -72,27 +522,9 @@ public class AccountAppraisalDelegate {
             }
         } else {
 
-           return accountSideState.getAccountBalance(debits,credits);
+           return (accountSide == DEBIT ? debitAccountState : creditAccountState).getAccountBalance(debits,credits);
         }
 
-        return new AccountBalance(HardCash.of(0.0,account.getCurrency()),account.getAccountSide());
-    }
-
-    private Cash getCredits(DateRange dateRange,List<Entry> accountEntries) {
-        return HardCash.of(accountEntries
-                .parallelStream()
-                .filter(entry -> dateRange.includes(entry.getBookingDate()))
-                .filter(entry -> entry.getAccountSide() == CREDIT)
-                .map(entry -> entry.getAmount().getNumber().doubleValue())
-                .reduce(0.00,(acc,value) -> acc + value), account.getCurrency());
-    }
-
-    private Cash getDebits(DateRange dateRange,List<Entry> accountEntries) {
-        return HardCash.of(accountEntries
-                .parallelStream()
-                .filter(entry -> dateRange.includes(entry.getBookingDate()))
-                .filter(entry -> entry.getAccountSide() == DEBIT)
-                .map(entry -> entry.getAmount().getNumber().doubleValue())
-                .reduce(0.00,(acc,value) -> acc + value), account.getCurrency());
+        return new AccountBalance(HardCash.of(0.0,account.getCurrency()),accountSide);
     }
 }
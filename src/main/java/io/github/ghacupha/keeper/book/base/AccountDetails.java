@@ -18,9 +18,7 @@ package io.github.ghacupha.keeper.book.base;
 import io.github.ghacupha.keeper.book.util.UnEnteredDetailsException;
 import io.github.ghacupha.time.point.TimePoint;
 
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 
 public final class AccountDetails {
 
@@ -30,7 +28,8 @@ public final class AccountDetails {
 
     private final TimePoint openingDate;
 
-    private final Map<String, Object> accountDetails = new ConcurrentHashMap<>();
+    // shared empty attributes until one is set
+    private volatile Attributes attributes = Attributes.EMPTY;
 
     public AccountDetails(String name, String number, TimePoint openingDate) {
         this.name = name;
@@ -55,14 +54,18 @@ public final class AccountDetails {
     }
 
     public void setAttribute(String label, Object attribute){
-        accountDetails.put(label,attribute);
+        synchronized (this) {
+            attributes = attributes.with(label, attribute);
+        }
     }
 
     public Object getAttribute(String label) throws UnEnteredDetailsException {
-        if(!accountDetails.containsKey(label)){
+        Object attribute = attributes.get(label);
+
+        if(attribute == null){
             throw new UnEnteredDetailsException(String.format("The attribute : %s is not found coz it was never entered in the first place",label));
         } else {
-            return accountDetails.get(label);
+            return attribute;
         }
     }
 
@@ -75,12 +78,12 @@ public final class AccountDetails {
             return false;
         }
         AccountDetails that = (AccountDetails) o;
-        return Objects.equals(name, that.name) && Objects.equals(number, that.number) && Objects.equals(openingDate, that.openingDate) && Objects.equals(accountDetails, that.accountDetails);
+        return Objects.equals(name, that.name) && Objects.equals(number, that.number) && Objects.equals(openingDate, that.openingDate) && attributes.equals(that.attributes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, number, openingDate, accountDetails);
+        return Objects.hash(name, number, openingDate, attributes);
     }
 
     @Override
@@ -89,7 +92,7 @@ public final class AccountDetails {
         sb.append("name='").append(name).append('\'');
         sb.append(", number='").append(number).append('\'');
         sb.append(", openingDate=").append(openingDate);
-        sb.append(", accountDetails=").append(accountDetails);
+        sb.append(", accountDetails=").append(attributes);
         sb.append('}');
         return sb.toString();
     }
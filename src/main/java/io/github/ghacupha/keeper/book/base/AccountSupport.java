@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Currency;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * What the {@link Account} implementations of this package have in common whichever way they keep their entries: the
+ * checks made on the entries added to them and on the periods closed, and the closing of a period for those whose
+ * balances are appraised by an {@link AccountAppraisalDelegate}
+ *
+ * @author edwin.njeru
+ */
+final class AccountSupport {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountSupport.class);
+
+    private AccountSupport() {
+    }
+
+    /**
+     * Refuses an entry booked on a date {@link EpochDays} cannot convert, before the account was opened, or in a
+     * currency other than the account's
+     */
+    static void checkEntry(Entry entry, AccountDetails accountDetails, Currency currency) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        if (!EpochDays.supports(entry.getBookingDate())) {
+
+            throw new UntimelyBookingDateException(String.format("The booking date %s is not a calendar date from the year 0 to 9999", entry.getBookingDate()));
+
+        } else if (entry.getBookingDate().before(accountDetails.getOpeningDate())) {
+
+            String message = String.format("Opening date : %s . The entry date was %s", accountDetails.getOpeningDate(), entry.getBookingDate());
+            throw new UntimelyBookingDateException("The booking date cannot be earlier than the account opening date : " + message);
+
+        } else if (!currency.equals(entry.getAmount().getCurrency())) {
+
+            String message = String.format("Currencies mismatched :Expected getCurrency : %s but found entry denominated in %s", currency.toString(), entry.getAmount().getCurrency());
+            throw new MismatchedCurrencyException(message);
+
+        }
+    }
+
+    /**
+     * Refuses an entry booked on or before the closing date, if a period has been closed
+     */
+    static void checkNotClosed(Entry entry, TimePoint closingDate) throws UntimelyBookingDateException {
+
+        if (closingDate != null && !entry.getBookingDate().after(closingDate)) {
+
+            String message = String.format("Closing date : %s . The entry date was %s", closingDate, entry.getBookingDate());
+            throw new UntimelyBookingDateException("The booking date falls in a period that has been closed : " + message);
+        }
+    }
+
+    /**
+     * Refuses to close a period ending before the account was opened, or not after the latest period closed
+     */
+    static void checkClosingDate(TimePoint closingDate, AccountDetails accountDetails, TimePoint latestClosingDate) throws UntimelyBookingDateException {
+
+        if (closingDate.before(accountDetails.getOpeningDate())) {
+
+            String message = String.format("Opening date : %s . The closing date was %s", accountDetails.getOpeningDate(), closingDate);
+            throw new UntimelyBookingDateException("The closing date cannot be earlier than the account opening date : " + message);
+
+        } else if (latestClosingDate != null && !closingDate.after(latestClosingDate)) {
+
+            String message = String.format("Latest closing date : %s . The closing date was %s", latestClosingDate, closingDate);
+            throw new UntimelyBookingDateException("The period has already been closed : " + message);
+        }
+    }
+
+    /**
+     * Closes the accounting period of the account ending on the closing date, under the account's {@link
+     * PostingLocks} so that no transaction is half way through posting to it, and under the write lock of its
+     * period lock, whose read lock is held by whoever adds entries to it
+     */
+    @SuppressWarnings("try")
+    static AccountBalance closePeriod(Account account, ReadWriteLock periodLock, AccountAppraisalDelegate appraisalDelegate, TimePoint closingDate) throws UntimelyBookingDateException {
+
+        log.debug("Closing the period ending on {} for account : {}", closingDate, account);
+
+        try (PostingLocks.Hold ignored = PostingLocks.forClosing(account)) {
+
+            periodLock.writeLock().lock();
+            try {
+                checkClosingDate(closingDate, account.getAccountDetails(), appraisalDelegate.getLatestClosingDate());
+
+                AccountBalance balance = appraisalDelegate.closePeriod(closingDate);
+
+                log.debug("Period ending on {} closed for account : {} with balance : {}", closingDate, account, balance);
+
+                return balance;
+
+            } finally {
+                periodLock.writeLock().unlock();
+            }
+        }
+    }
+}
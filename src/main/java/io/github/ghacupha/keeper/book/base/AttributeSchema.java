@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Labels of the attributes of {@link EntryDetails} and {@link AccountDetails}, each given a small id the first time
+ * it is used. The ids are shared by all details, so that details need only keep their values in an array indexed by
+ * the id instead of a map of their own. There are expected to be a few labels in use, like an invoice number or a
+ * cost centre, against any number of details.
+ *
+ * @author edwin.njeru
+ */
+final class AttributeSchema {
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // labels by id
+    private static volatile String[] labels = new String[0];
+
+    private AttributeSchema() {
+    }
+
+    /**
+     * @param label Label of the attribute
+     * @return Id of the label, given to it now if it has none yet
+     */
+    static int idOf(String label) {
+
+        Integer id = ids.get(label);
+
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (AttributeSchema.class) {
+
+            id = ids.get(label);
+
+            if (id == null) {
+
+                String[] grown = Arrays.copyOf(labels, labels.length + 1);
+
+                id = labels.length;
+                grown[id] = label;
+
+                labels = grown;
+                ids.put(label, id);
+            }
+
+            return id;
+        }
+    }
+
+    /**
+     * @param label Label of the attribute
+     * @return Id of the label, or -1 if it has never been used
+     */
+    static int find(String label) {
+
+        Integer id = ids.get(label);
+
+        return id == null ? -1 : id;
+    }
+
+    static String labelOf(int id) {
+
+        return labels[id];
+    }
+}
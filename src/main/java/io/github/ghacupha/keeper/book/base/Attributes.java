@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable values of the attributes of {@link EntryDetails} or {@link AccountDetails}, kept in an array indexed by the
+ * {@link AttributeSchema} id of their labels. Details without attributes all share {@link #EMPTY}, and setting an
+ * attribute makes new {@link Attributes}, which makes them safe to read without locking. The hash code is worked out
+ * once, the way a {@link Map} of the same attributes would work it out, and comparing two of them compares two small
+ * arrays. String values are kept as the copy in the ledger's {@link StringDictionary} if there is one.
+ *
+ * @author edwin.njeru
+ */
+final class Attributes {
+
+    static final Attributes EMPTY = new Attributes(new Object[0]);
+
+    // by the id of the label, no longer than the largest id set, null where not set
+    private final Object[] values;
+
+    private final int hash;
+
+    private Attributes(Object[] values) {
+
+        this.values = values;
+
+        int sum = 0;
+
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] != null) {
+                sum += AttributeSchema.labelOf(id).hashCode() ^ values[id].hashCode();
+            }
+        }
+
+        this.hash = sum;
+    }
+
+    /**
+     * @param label Label of the attribute
+     * @param value Value of the attribute, which cannot be null
+     * @return {@link Attributes} with the value set
+     */
+    Attributes with(String label, Object value) {
+
+        Objects.requireNonNull(value, "The attribute " + label + " cannot be null");
+
+        int id = AttributeSchema.idOf(label);
+
+        StringDictionary dictionary = StringDictionary.getDefault();
+
+        if (dictionary != null && value instanceof String) {
+            value = dictionary.intern((String) value);
+        }
+
+        Object[] copy = Arrays.copyOf(values, Math.max(values.length, id + 1));
+
+        copy[id] = value;
+
+        return new Attributes(copy);
+    }
+
+    boolean contains(String label) {
+
+        return get(label) != null;
+    }
+
+    /**
+     * @param label Label of the attribute
+     * @return Value of the attribute or null if it has not been set
+     */
+    Object get(String label) {
+
+        int id = AttributeSchema.find(label);
+
+        return id >= 0 && id < values.length ? values[id] : null;
+    }
+
+    /**
+     * @return Read-only {@link Map} of the attributes by their labels
+     */
+    Map<String, Object> asMap() {
+
+        if (values.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+
+        for (int id = 0; id < values.length; id++) {
+            if (values[id] != null) {
+                map.put(AttributeSchema.labelOf(id), values[id]);
+            }
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Attributes that = (Attributes) o;
+        return hash == that.hash && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, least recently used cache of an {@link Account}'s {@link AccountBalance} by the date as at which it was
+ * asked for. An {@link Entry} booked on some date only changes balances as at that date or later, so adding it
+ * invalidates only those, and balances as at earlier dates stay cached.
+ * A balance which was being computed while an entry was added is not cached, since it may or may not include the entry.
+ *
+ * @author edwin.njeru
+ */
+final class BalanceCache {
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final Map<Integer, AccountBalance> balances;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    // bumped on every invalidation, guarded by the balances map
+    private long version;
+
+    BalanceCache(int capacity) {
+
+        this.balances = new LinkedHashMap<Integer, AccountBalance>(capacity * 4 / 3 + 1, 0.75f, true) {
+
+            private static final long serialVersionUID = -6187453624571327460L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, AccountBalance> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param asAt {@link TimePoint} of the balance enquiry
+     * @param appraisal Computes the balance if it is not cached
+     * @return {@link AccountBalance} as at the date
+     */
+    AccountBalance get(TimePoint asAt, Function<TimePoint, AccountBalance> appraisal) {
+
+        Integer day = EpochDays.of(asAt);
+
+        long appraisedVersion;
+
+        synchronized (balances) {
+
+            AccountBalance balance = balances.get(day);
+
+            if (balance != null) {
+                hits.increment();
+                return balance;
+            }
+
+            appraisedVersion = version;
+        }
+
+        misses.increment();
+
+        AccountBalance balance = appraisal.apply(asAt);
+
+        synchronized (balances) {
+
+            if (appraisedVersion == version) {
+                balances.put(day, balance);
+            }
+        }
+
+        return balance;
+    }
+
+    /**
+     * To be called once the {@link Entry} can be seen by the appraisal
+     *
+     * @param bookingDate {@link TimePoint} of the entry which has been added
+     */
+    void invalidateFrom(TimePoint bookingDate) {
+
+        int day = EpochDays.of(bookingDate);
+
+        synchronized (balances) {
+
+            version++;
+
+            Iterator<Integer> days = balances.keySet().iterator();
+
+            while (days.hasNext()) {
+                if (days.next() >= day) {
+                    days.remove();
+                }
+            }
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+}
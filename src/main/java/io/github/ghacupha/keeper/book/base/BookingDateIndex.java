@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Index of an {@link Account}'s debit and credit sums, in minor units of the currency, by booking date, implemented as a pair of Fenwick (binary
+ * indexed) trees over the days since the account's opening date. Adding an {@link Entry} and summing everything booked
+ * up to a given date both take O(log d) where d is the number of days the account has been open, regardless of the
+ * order in which entries arrive, so back-dated entries are no more expensive than current ones.
+ * The trees grow by doubling as later booking dates come in. Reads are optimistic and only fall back to a read lock
+ * if an entry was added while they were summing.
+ *
+ * @author edwin.njeru
+ */
+final class BookingDateIndex {
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final Account account;
+
+    private final StampedLock lock = new StampedLock();
+
+    // Epoch day of the account's opening date, resolved on the first entry
+    private int origin;
+    private boolean opened;
+
+    // 1-based Fenwick trees, capacity is always a power of two
+    private long[] debits = new long[INITIAL_CAPACITY + 1];
+    private long[] credits = new long[INITIAL_CAPACITY + 1];
+
+    BookingDateIndex(Account account) {
+        this.account = account;
+    }
+
+    /**
+     * @param entry {@link Entry} whose amount is to be added at its booking date
+     */
+    void add(Entry entry) {
+
+        long amount = entry.getAmountMinorUnits();
+        int day = EpochDays.of(entry.getBookingDate());
+
+        long stamp = lock.writeLock();
+        try {
+            insert(day, entry.getAccountSide() == DEBIT, amount);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a batch of entries under one acquisition of the lock
+     *
+     * @param entries {@link Entry} items added to the account
+     */
+    void addAll(List<? extends Entry> entries) {
+
+        int count = entries.size();
+
+        int[] days = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            days[i] = EpochDays.of(entries.get(i).getBookingDate());
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+
+                Entry entry = entries.get(i);
+
+                insert(days[i], entry.getAccountSide() == DEBIT, entry.getAmountMinorUnits());
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // must hold the write lock
+    private void insert(int day, boolean debit, long amount) {
+
+        if (!opened) {
+            origin = EpochDays.of(account.getOpeningDate());
+            opened = true;
+        }
+
+        int position = day - origin + 1;
+
+        if (position < 1) {
+            // booked before the account was opened, which no balance enquiry will include
+            return;
+        }
+
+        while (position >= debits.length) {
+            debits = grow(debits);
+            credits = grow(credits);
+        }
+
+        long[] tree = debit ? debits : credits;
+
+        for (int i = position; i < tree.length; i += i & -i) {
+            tree[i] += amount;
+        }
+    }
+
+    /**
+     * @param asAt {@link TimePoint} up to which, inclusive, entries are summed
+     * @return {@link Sums} of debits and credits booked on or before the date
+     */
+    Sums sumsAsAt(TimePoint asAt) {
+
+        int day = EpochDays.of(asAt);
+
+        long stamp = lock.tryOptimisticRead();
+
+        Sums sums = sum(day);
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                sums = sum(day);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return sums;
+    }
+
+    /**
+     * @param days Epoch days up to each of which, inclusive, entries are summed
+     * @return {@link Sums} of debits and credits booked on or before each of the days, all of them taken from the
+     * same state of the index
+     */
+    Sums[] sumsAsAt(int[] days) {
+
+        Sums[] sums = new Sums[days.length];
+
+        long stamp = lock.tryOptimisticRead();
+
+        for (int i = 0; i < days.length; i++) {
+            sums[i] = sum(days[i]);
+        }
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                for (int i = 0; i < days.length; i++) {
+                    sums[i] = sum(days[i]);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        return sums;
+    }
+
+    private Sums sum(int day) {
+
+        long[] debitTree = debits;
+        long[] creditTree = credits;
+
+        if (!opened || day < origin || creditTree.length != debitTree.length) {
+            // nothing booked yet, or a resize is in flight and the read will be retried
+            return Sums.ZERO;
+        }
+
+        int position = Math.min(day - origin + 1, debitTree.length - 1);
+
+        long debitSum = 0;
+        long creditSum = 0;
+
+        for (int i = position; i > 0; i -= i & -i) {
+            debitSum += debitTree[i];
+            creditSum += creditTree[i];
+        }
+
+        return new Sums(debitSum, creditSum);
+    }
+
+    /*
+     * Doubling a Fenwick tree whose capacity is a power of two leaves every existing node covering the same range.
+     * Of the new nodes only the last one covers anything already added, that is the whole of the old tree.
+     */
+    private static long[] grow(long[] tree) {
+
+        int capacity = tree.length - 1;
+
+        long[] grown = new long[2 * capacity + 1];
+
+        System.arraycopy(tree, 0, grown, 0, tree.length);
+
+        grown[2 * capacity] = tree[capacity];
+
+        return grown;
+    }
+
+    /**
+     * Debits and credits, in minor units, summed up to some date
+     */
+    static final class Sums {
+
+        static final Sums ZERO = new Sums(0, 0);
+
+        private final long debits;
+
+        private final long credits;
+
+        Sums(long debits, long credits) {
+            this.debits = debits;
+            this.credits = credits;
+        }
+
+        long getDebits() {
+            return debits;
+        }
+
+        long getCredits() {
+            return credits;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Debits and credits, in minor units, of an {@link Account} as at the closing date of an accounting period. Once the
+ * period is closed no entries can be booked on or before the closing date, so the sums never change and balances as at
+ * later dates can start from here instead of from the opening date of the account.
+ * Entries are appended to the account in the order they are added, so the entries of the open period are those added
+ * after the close, plus any entries added before the close that were already booked beyond the closing date. The
+ * latter are few and are carried over with the checkpoint.
+ *
+ * @author edwin.njeru
+ */
+final class Checkpoint {
+
+    private final TimePoint closingDate;
+
+    private final long debits;
+
+    private final long credits;
+
+    // number of entries the account had when the period was closed
+    private final int entryCount;
+
+    // entries added before the close, but booked after the closing date
+    private final List<Entry> carriedOver;
+
+    Checkpoint(TimePoint closingDate, long debits, long credits, int entryCount, List<Entry> carriedOver) {
+        this.closingDate = closingDate;
+        this.debits = debits;
+        this.credits = credits;
+        this.entryCount = entryCount;
+        this.carriedOver = Collections.unmodifiableList(carriedOver);
+    }
+
+    TimePoint getClosingDate() {
+        return closingDate;
+    }
+
+    long getDebits() {
+        return debits;
+    }
+
+    long getCredits() {
+        return credits;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    List<Entry> getCarriedOver() {
+        return carriedOver;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+        sb.append("closingDate=").append(closingDate);
+        sb.append(", debits=").append(debits);
+        sb.append(", credits=").append(credits);
+        sb.append(", entryCount=").append(entryCount);
+        sb.append('}');
+        return sb.toString();
+    }
+}
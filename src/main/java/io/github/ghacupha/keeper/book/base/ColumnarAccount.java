@@ -0,0 +1,354 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.SimpleDate;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * An {@link Account} which, unlike the {@link SimpleAccount}, does not hold on to the {@link Entry} items added to it.
+ * What is kept of each entry is its amount, booking date, side and {@link EntryDetails}, as primitives in the columns of
+ * an {@link EntryStore}, in place of an {@link Entry} object with its {@link io.github.ghacupha.cash.Cash} amount and
+ * {@link TimePoint} booking date. {@link Entry} items are made again only when asked for through {@link #getEntries()}.
+ * The {@link EntryDetails} are still kept as objects, and the ratio of heap saved turns on them. Measured as the
+ * growth of the heap over a million entries, an entry takes about 18 bytes against 180 in a {@link SimpleAccount} when
+ * entries share their details object, about 55 against 215 when each has its own with the narration in the
+ * {@link StringDictionary}, and about 110 against 270 when each has its own with the narration held as a string.
+ * The {@link AccountAppraisalDelegate} works out balances in the past by going through the columns of the store one
+ * after the other, while balances as at the latest booking date or later come from {@link RunningTotals} kept as
+ * entries are added. Closing periods works just as it does in the {@link SimpleAccount}.
+ * The columns are kept in arrays on the heap, or, for ledgers too large for that, off the heap in direct buffers or a
+ * memory-mapped file, see {@link #makeOffHeapAccount} and {@link #makeMappedAccount}.
+ *
+ * @author edwin.njeru
+ */
+public final class ColumnarAccount implements Account, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarAccount.class);
+
+    private final Currency currency;
+    private final AccountDetails accountDetails;
+
+    private final EntryStore entryStore;
+
+    private final AccountAppraisalDelegate appraisalDelegate;
+
+    // totals and side as last published, from which balances are read without writing anything
+    private final AtomicReference<RunningTotals> runningTotals;
+
+    // shared by entries being added, exclusive while a period is being closed
+    private final ReadWriteLock periodLock = new ReentrantReadWriteLock();
+
+    /**
+     * @param accountSide    {@link AccountSide} to which this account belongs by default
+     * @param currency       {@link Currency} to be used for all {@link Entry} items to be added to this account
+     * @param accountDetails {@link AccountDetails} describes the basic nature of this account from business domain's perspective
+     * @param entryStore     {@link EntryStore} in which the entries are to be kept, which may already hold entries
+     *                       such as those restored from a snapshot
+     */
+    ColumnarAccount(AccountSide accountSide, Currency currency, AccountDetails accountDetails, EntryStore entryStore) {
+        this.currency = currency;
+        this.runningTotals = new AtomicReference<>(RunningTotals.opening(accountSide));
+        this.accountDetails = accountDetails;
+        this.entryStore = entryStore;
+        this.appraisalDelegate = new AccountAppraisalDelegate(this, entryStore);
+
+        int size = entryStore.size();
+
+        if (size > 0) {
+
+            long[] sums = new long[2];
+
+            entryStore.sum(0, size, Integer.MIN_VALUE, Integer.MAX_VALUE, sums);
+
+            int latestDay = Integer.MIN_VALUE;
+
+            for (int position = 0; position < size; position++) {
+                latestDay = Math.max(latestDay, entryStore.bookingDay(position));
+            }
+
+            runningTotals.set(RunningTotals.of(accountSide, sums[0], sums[1], EpochDays.toTimePoint(latestDay)));
+        }
+    }
+
+    public ColumnarAccount(AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
+
+        this(accountSide, currency, accountDetails, new HeapEntryStore(currency));
+    }
+
+    public static Account makeAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
+        return new ColumnarAccount(accountSide, currency, accountDetails);
+    }
+
+    /**
+     * @return {@link ColumnarAccount} whose entries are kept off the heap, in direct buffers which count against
+     * {@code -XX:MaxDirectMemorySize} and are freed when the account is closed
+     */
+    public static ColumnarAccount makeOffHeapAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
+        return new ColumnarAccount(accountSide, currency, accountDetails, OffHeapEntryStore.direct(currency));
+    }
+
+    /**
+     * @param file {@link Path} of the file into which the entries are written, which is mapped into memory. The file
+     *             is created if it does not exist and written over if it does
+     * @return {@link ColumnarAccount} whose entries are kept in a memory-mapped file, which is unmapped when the
+     * account is closed
+     */
+    public static ColumnarAccount makeMappedAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails, Path file) {
+        return new ColumnarAccount(accountSide, currency, accountDetails, OffHeapEntryStore.mapped(currency, file));
+    }
+
+    /**
+     * @param entry {@link Entry} whose particulars are to be added to this
+     */
+    @Override
+    public void addEntry(Entry entry) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        log.debug("Adding entry to account : {}", entry);
+
+        AccountSupport.checkEntry(entry, accountDetails, currency);
+
+        periodLock.readLock().lock();
+        try {
+            AccountSupport.checkNotClosed(entry, appraisalDelegate.getLatestClosingDate());
+
+            entryStore.append(entry.getAmountMinorUnits(), EpochDays.of(entry.getBookingDate()), entry.getAccountSide() == DEBIT, entry.getEntryDetails());
+
+            runningTotals.updateAndGet(totals -> totals.add(entry));
+
+        } finally {
+            periodLock.readLock().unlock();
+        }
+
+        log.debug("Entry : {} has been added into account : {}", entry, this);
+    }
+
+    /**
+     * Adds a batch of entries. Every entry is checked before any is appended, and then the batch goes into the
+     * {@link EntryStore} and the running totals in one go each
+     *
+     * @param entries {@link Entry} items to be added to this
+     */
+    @Override
+    public void addEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        log.debug("Adding {} entries to account : {}", entries.size(), this);
+
+        for (Entry entry : entries) {
+            AccountSupport.checkEntry(entry, accountDetails, currency);
+        }
+
+        periodLock.readLock().lock();
+        try {
+            TimePoint closingDate = appraisalDelegate.getLatestClosingDate();
+
+            for (Entry entry : entries) {
+                AccountSupport.checkNotClosed(entry, closingDate);
+            }
+
+            entryStore.appendAll(entries);
+
+            runningTotals.updateAndGet(totals -> totals.addAll(entries));
+
+        } finally {
+            periodLock.readLock().unlock();
+        }
+
+        log.debug("{} entries have been added into account : {}", entries.size(), this);
+    }
+
+    @Override
+    public void checkEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        for (Entry entry : entries) {
+            AccountSupport.checkEntry(entry, accountDetails, currency);
+        }
+
+        periodLock.readLock().lock();
+        try {
+            TimePoint closingDate = appraisalDelegate.getLatestClosingDate();
+
+            for (Entry entry : entries) {
+                AccountSupport.checkNotClosed(entry, closingDate);
+            }
+        } finally {
+            periodLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the accounting period ending on the closing date, in the same way as a {@link SimpleAccount}
+     *
+     * @param closingDate {@link TimePoint} of the last day of the period being closed
+     * @return {@link AccountBalance} as at the closing date
+     */
+    @Override
+    public AccountBalance closePeriod(TimePoint closingDate) throws UntimelyBookingDateException {
+
+        return AccountSupport.closePeriod(this, periodLock, appraisalDelegate, closingDate);
+    }
+
+    /**
+     * Returns the balance of the Account
+     *
+     * @param asAt {@link TimePoint} at which is Effective
+     * @return {@link AccountBalance}
+     */
+    @Override
+    public AccountBalance balance(TimePoint asAt) {
+
+        log.debug("Account balance enquiry raised as at {}, for account : {}", asAt, this);
+
+        RunningTotals totals = runningTotals.get();
+
+        AccountBalance balance = totals.covers(asAt) ?
+            appraisalDelegate.balance(totals.getDebits(), totals.getCredits(), totals.getAccountSide()) :
+            appraisalDelegate.balance(asAt);
+
+        log.debug("Returning accounting balance for {} as at : {} as : {}", this, asAt, balance);
+
+        return balance;
+    }
+
+    /**
+     * @param asAt {@link TimePoint} at which is Effective
+     * @return Debits less credits as at the date in minor units
+     */
+    @Override
+    public long balanceMinorUnits(TimePoint asAt) {
+
+        RunningTotals totals = runningTotals.get();
+
+        if (totals.covers(asAt)) {
+
+            return totals.getDebits() - totals.getCredits();
+        }
+
+        return Account.super.balanceMinorUnits(asAt);
+    }
+
+    /**
+     * Balances as at each of the dates given, taken in a single pass over the columns of the {@link EntryStore}
+     *
+     * @param asAt {@link TimePoint} dates as at which balances are wanted, in any order
+     * @return {@link AccountBalance} as at each date, in the order the dates were given
+     */
+    @Override
+    public List<AccountBalance> balances(List<TimePoint> asAt) {
+
+        return appraisalDelegate.balances(asAt);
+    }
+
+    @Override
+    public AccountBalance balance(int... asAt) {
+
+        AccountBalance balance = balance(new SimpleDate(asAt[0], asAt[1], asAt[2]));
+
+        log.debug("Returning accounting balance for {} ,as at : {} as : {}", this, Arrays.toString(asAt), balance);
+
+        return balance;
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * @return Read-only view of the {@link Entry} items added so far, each of which is made from the columns of the
+     * {@link EntryStore} when it is got from the list
+     */
+    @Override
+    public List<Entry> getEntries() {
+
+        return entryStore.entries();
+    }
+
+    EntryStore getEntryStore() {
+        return entryStore;
+    }
+
+    /**
+     * @return {@link TimePoint} closing date of the latest period closed, or null if none has been closed
+     */
+    TimePoint getLatestClosingDate() {
+        return appraisalDelegate.getLatestClosingDate();
+    }
+
+    @Override
+    public TimePoint getOpeningDate() {
+        return this.accountDetails.getOpeningDate();
+    }
+
+    @Override
+    public String toString() {
+        return this.accountDetails.getName() + " " + this.accountDetails.getNumber();
+    }
+
+    @Override
+    public AccountSide getAccountSide() {
+
+        return runningTotals.get().getAccountSide() == DEBIT ? DEBIT : CREDIT;
+    }
+
+    @Override
+    public AccountDetails getAccountDetails() {
+
+        return accountDetails;
+    }
+
+    @Override
+    public void setAccountSide(final AccountSide accountSide) {
+
+        runningTotals.updateAndGet(totals -> totals.withAccountSide(accountSide));
+    }
+
+    /**
+     * Frees the memory outside of the heap in which the entries are kept, for accounts made with
+     * {@link #makeOffHeapAccount} or {@link #makeMappedAccount}. The account must no longer be used once closed, nor
+     * while being closed
+     */
+    @Override
+    public void close() {
+
+        entryStore.close();
+    }
+}
@@ -19,16 +19,36 @@ import io.github.ghacupha.keeper.book.util.UnEnteredDetailsException;
 
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 
 public final class EntryDetails {
 
+    // null if the narration is encoded in the dictionary
     private final String narration;
 
-    private final Map<String,Object> entryMap = new ConcurrentHashMap<>();
+    // null unless the narration is encoded, in which case the narration is kept as its code
+    private final StringDictionary dictionary;
+    private final int narrationCode;
 
+    // shared empty attributes until one is set
+    private volatile Attributes attributes = Attributes.EMPTY;
+
+    /**
+     * @param narration Narration of the entry, which is encoded in the {@link StringDictionary} of the ledger if
+     *                  there is one
+     */
     public EntryDetails(String narration) {
-        this.narration = narration;
+
+        StringDictionary ledgerDictionary = StringDictionary.getDefault();
+
+        if (ledgerDictionary == null || narration == null) {
+            this.narration = narration;
+            this.dictionary = null;
+            this.narrationCode = StringDictionary.NO_CODE;
+        } else {
+            this.narration = null;
+            this.dictionary = ledgerDictionary;
+            this.narrationCode = ledgerDictionary.encode(narration);
+        }
     }
 
     public static EntryDetails details(String narration){
@@ -36,23 +56,42 @@ public final class EntryDetails {
     }
 
     public String getNarration() {
-        return narration;
+        return dictionary == null ? narration : dictionary.decode(narrationCode);
     }
 
+    /**
+     * @return Code of the narration in the {@link StringDictionary} it is encoded in, or
+     * {@link StringDictionary#NO_CODE} if it is not encoded
+     */
+    public int getNarrationCode() {
+        return narrationCode;
+    }
+
+    boolean isEncodedIn(StringDictionary stringDictionary) {
+        return dictionary != null && dictionary == stringDictionary;
+    }
+
+    /**
+     * @return Read-only {@link Map} of the attributes set so far
+     */
     public Map<String, Object> getEntryMap() {
-        return entryMap;
+        return attributes.asMap();
     }
 
     public void setAttribute(String label, Object attribute){
-        entryMap.put(label,attribute);
+        synchronized (this) {
+            attributes = attributes.with(label, attribute);
+        }
     }
 
     public Object getAttribute(String label) throws UnEnteredDetailsException {
 
-        if(!entryMap.containsKey(label)){
+        Object attribute = attributes.get(label);
+
+        if(attribute == null){
             throw new UnEnteredDetailsException(String.format("Could not find %s since it was never added in the first place",label));
         } else {
-            return entryMap.get(label);
+            return attribute;
         }
     }
 
@@ -65,19 +104,22 @@ public final class EntryDetails {
             return false;
         }
         EntryDetails that = (EntryDetails) o;
-        return Objects.equals(narration, that.narration) && Objects.equals(entryMap, that.entryMap);
+        boolean sameNarration = dictionary != null && dictionary == that.dictionary ?
+            narrationCode == that.narrationCode :
+            Objects.equals(getNarration(), that.getNarration());
+        return sameNarration && attributes.equals(that.attributes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(narration, entryMap);
+        return Objects.hash(getNarration(), attributes);
     }
 
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("{");
-        sb.append("'").append(narration).append('\'');
-        sb.append(", otherEntryDetails=").append(entryMap);
+        sb.append("'").append(getNarration()).append('\'');
+        sb.append(", otherEntryDetails=").append(attributes);
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * Columnar storage of the {@link Entry} items of an {@link io.github.ghacupha.keeper.book.api.Account}. Each entry is
+ * kept as primitives only: the amount in minor units of the currency, the booking date as an epoch day, the
+ * {@link AccountSide} as a bit and a reference into a table of {@link EntryDetails}. {@link Entry} objects are only
+ * made when asked for, as views over a position in the store.
+ * Stores are appended to by one thread at a time, which is for the account to see to, while any number of threads may
+ * read; a reader sees every entry up to the {@link #size()} it read.
+ *
+ * @author edwin.njeru
+ */
+interface EntryStore extends Closeable {
+
+    /**
+     * @return {@link Currency} in whose minor units the amounts are kept
+     */
+    Currency getCurrency();
+
+    /**
+     * @return Number of entries in the store
+     */
+    int size();
+
+    /**
+     * Adds an entry at the end of the store
+     *
+     * @param amountMinorUnits Amount of the entry in minor units of the currency
+     * @param bookingDay       Booking date of the entry as a number of days since 1970-01-01
+     * @param debit            true if the entry is on the {@link AccountSide#DEBIT} side
+     * @param entryDetails     {@link EntryDetails} of the entry
+     */
+    void append(long amountMinorUnits, int bookingDay, boolean debit, EntryDetails entryDetails);
+
+    /**
+     * Adds a batch of entries at the end of the store, in the order given
+     *
+     * @param entries {@link Entry} items to be added
+     */
+    default void appendAll(List<? extends Entry> entries) {
+
+        for (Entry entry : entries) {
+            append(entry.getAmountMinorUnits(), EpochDays.of(entry.getBookingDate()), entry.getAccountSide() == AccountSide.DEBIT, entry.getEntryDetails());
+        }
+    }
+
+    long amountMinorUnits(int position);
+
+    int bookingDay(int position);
+
+    boolean isDebit(int position);
+
+    EntryDetails entryDetails(int position);
+
+    /**
+     * Adds up the entries at positions from inclusive to exclusive, booked from the first day to the last day
+     * inclusive, into debits at sums[0] and credits at sums[1]
+     *
+     * @param from     First position
+     * @param to       Position after the last
+     * @param firstDay Earliest booking day included
+     * @param lastDay  Latest booking day included
+     * @param sums     Accumulators for debits and credits, in that order
+     */
+    default void sum(int from, int to, int firstDay, int lastDay, long[] sums) {
+
+        for (int position = from; position < to; position++) {
+
+            int day = bookingDay(position);
+
+            if (day >= firstDay && day <= lastDay) {
+                sums[isDebit(position) ? 0 : 1] += amountMinorUnits(position);
+            }
+        }
+    }
+
+    /**
+     * @return Read-only {@link List} view of the entries in the store as they are now. Entries appended later are not
+     * in the view, so it can be gone through while entries are being added
+     */
+    default List<Entry> entries() {
+
+        int count = size();
+
+        return new AbstractList<Entry>() {
+
+            @Override
+            public Entry get(int index) {
+
+                if (index < 0 || index >= count) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+                }
+
+                return entry(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * @param position Position of the entry
+     * @return {@link Entry} view of the entry at the position
+     */
+    default Entry entry(int position) {
+
+        return new StoredEntry(this, position);
+    }
+
+    /**
+     * Frees whatever the store holds outside of the heap, which stores on the heap have none of. The store must no
+     * longer be read nor written once closed, nor while being closed
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+/**
+ * {@link EntryStore} keeping its entries in primitive arrays on the heap, one array per column. An entry takes 16 bytes
+ * of the columns, 8 for the amount, 4 for the booking day and 4 for the {@link EntryDetails} reference with the side
+ * folded into its lowest bit, and adding up the entries goes through the arrays one after the other.
+ * The {@link EntryDetails} objects are not in the columns but in a table of references beside them, where an entry
+ * takes a slot of its own unless it has the same details as the entry before it, as the legs of a batch often do. So
+ * an entry costs from 16 to 20 bytes (24 without compressed references), and its details object on top of that, which
+ * is still on the heap and is only shared if the caller shares it.
+ * The arrays are grown by doubling, each time into new arrays which are published before the size, so that a reader
+ * which has read the size always finds arrays holding at least that many entries.
+ *
+ * @author edwin.njeru
+ */
+final class HeapEntryStore implements EntryStore {
+
+    static final int INITIAL_CAPACITY = 64;
+
+    private final Currency currency;
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY, INITIAL_CAPACITY);
+
+    private volatile int size;
+
+    // slots of the details table taken, only used while appending
+    private int detailsCount;
+
+    HeapEntryStore(Currency currency) {
+        this.currency = currency;
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void append(long amountMinorUnits, int bookingDay, boolean debit, EntryDetails entryDetails) {
+
+        int position = size;
+
+        Columns current = columns;
+
+        if (position == current.amounts.length) {
+            current = current.grow(position << 1, current.details.length);
+        }
+
+        current = put(current, position, amountMinorUnits, bookingDay, debit, entryDetails);
+
+        columns = current;
+        size = position + 1;
+    }
+
+    /**
+     * Grows the columns at most once for the whole batch, and publishes the new size once all of the batch has been
+     * written
+     */
+    @Override
+    public synchronized void appendAll(List<? extends Entry> entries) {
+
+        int position = size;
+        int count = entries.size();
+
+        Columns current = columns;
+
+        if (position + count > current.amounts.length) {
+
+            int capacity = current.amounts.length;
+
+            while (capacity < position + count) {
+                capacity <<= 1;
+            }
+
+            current = current.grow(capacity, current.details.length);
+        }
+
+        for (int i = 0; i < count; i++) {
+
+            Entry entry = entries.get(i);
+
+            current = put(current, position + i, entry.getAmountMinorUnits(), EpochDays.of(entry.getBookingDate()), entry.getAccountSide() == AccountSide.DEBIT, entry.getEntryDetails());
+        }
+
+        columns = current;
+        size = position + count;
+    }
+
+    // writes one entry at the position, which the columns already have room for, and returns the columns holding it
+    private Columns put(Columns current, int position, long amountMinorUnits, int bookingDay, boolean debit, EntryDetails entryDetails) {
+
+        int reference = detailsCount - 1;
+
+        if (reference < 0 || current.details[reference] != entryDetails) {
+
+            reference = detailsCount++;
+
+            if (reference == current.details.length) {
+                current = current.grow(current.amounts.length, reference << 1);
+            }
+
+            current.details[reference] = entryDetails;
+        }
+
+        current.amounts[position] = amountMinorUnits;
+        current.days[position] = bookingDay;
+        current.references[position] = reference << 1 | (debit ? 1 : 0);
+
+        return current;
+    }
+
+    @Override
+    public long amountMinorUnits(int position) {
+        return columns.amounts[position];
+    }
+
+    @Override
+    public int bookingDay(int position) {
+        return columns.days[position];
+    }
+
+    @Override
+    public boolean isDebit(int position) {
+        return (columns.references[position] & 1) == 1;
+    }
+
+    @Override
+    public EntryDetails entryDetails(int position) {
+
+        Columns current = columns;
+
+        return current.details[current.references[position] >>> 1];
+    }
+
+    @Override
+    public void sum(int from, int to, int firstDay, int lastDay, long[] sums) {
+
+        Columns current = columns;
+
+        long[] amounts = current.amounts;
+        int[] days = current.days;
+        int[] references = current.references;
+
+        long debits = 0;
+        long credits = 0;
+
+        for (int position = from; position < to; position++) {
+
+            int day = days[position];
+
+            if (day >= firstDay && day <= lastDay) {
+
+                if ((references[position] & 1) == 1) {
+                    debits += amounts[position];
+                } else {
+                    credits += amounts[position];
+                }
+            }
+        }
+
+        sums[0] += debits;
+        sums[1] += credits;
+    }
+
+    /*
+     * The arrays of one generation. Arrays are only ever written at positions beyond the published size, so a
+     * generation can be shared by the writer and readers
+     */
+    private static final class Columns {
+
+        private final long[] amounts;
+        private final int[] days;
+        private final int[] references;
+        private final EntryDetails[] details;
+
+        private Columns(int capacity, int detailsCapacity) {
+            this(new long[capacity], new int[capacity], new int[capacity], new EntryDetails[detailsCapacity]);
+        }
+
+        private Columns(long[] amounts, int[] days, int[] references, EntryDetails[] details) {
+            this.amounts = amounts;
+            this.days = days;
+            this.references = references;
+            this.details = details;
+        }
+
+        // only the arrays whose capacity changes are copied, the others are shared with the new generation
+        private Columns grow(int capacity, int detailsCapacity) {
+
+            boolean columnsGrow = capacity != amounts.length;
+
+            return new Columns(
+                columnsGrow ? Arrays.copyOf(amounts, capacity) : amounts,
+                columnsGrow ? Arrays.copyOf(days, capacity) : days,
+                columnsGrow ? Arrays.copyOf(references, capacity) : references,
+                detailsCapacity != details.length ? Arrays.copyOf(details, detailsCapacity) : details);
+        }
+    }
+}
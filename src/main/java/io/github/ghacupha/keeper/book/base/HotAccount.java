@@ -0,0 +1,432 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.ChunkedAppendLog;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.SimpleDate;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * An {@link Account} for the few accounts, such as the main cash account, VAT payable or suspense, which take a leg of
+ * nearly every transaction, so that every thread posting would otherwise queue up on the one account.
+ * The account is split into stripes, as many as there are processors, each with its own lock, entry log,
+ * {@link BookingDateIndex} and {@link RunningTotals}, much as a {@link java.util.concurrent.atomic.LongAdder} splits a
+ * count into cells but here in exact minor units of the currency. A thread adding entries takes the first stripe it
+ * finds free, starting from one of its own, so that threads adding at the same time mostly work on different stripes.
+ * Balances are read without any lock by adding up the stripes.
+ * Transactions posting to a hot account hold its {@link PostingLocks} shared rather than exclusive, which is what
+ * lets them go ahead side by side; a {@link io.github.ghacupha.keeper.book.balance.TrialBalance} in turn holds them
+ * exclusive, so that it still sees each transaction either whole or not at all.
+ * The entries of each stripe are in the order in which they were added, but there is no order across the stripes.
+ * Periods are closed by taking every stripe, after which no entry can be added on or before the closing date.
+ *
+ * @author edwin.njeru
+ */
+public final class HotAccount implements Account {
+
+    private static final Logger log = LoggerFactory.getLogger(HotAccount.class);
+
+    // a power of two
+    static final int STRIPES = Integer.highestOneBit(Math.max(1, Math.min(64, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+    private final Currency currency;
+    private final AccountDetails accountDetails;
+
+    private final AccountAppraisalDelegate appraisalDelegate = new AccountAppraisalDelegate(this);
+
+    private final Stripe[] stripes;
+
+    // null until a period is closed, only changed while every stripe is held
+    private volatile TimePoint latestClosingDate;
+
+    /**
+     * @param accountSide    {@link AccountSide} to which this account belongs by default
+     * @param currency       {@link Currency} to be used for all {@link Entry} items to be added to this account
+     * @param accountDetails {@link AccountDetails} describes the basic nature of this account from business domain's perspective
+     * @param stripeCount    Number of stripes, which is rounded up to a power of two
+     */
+    HotAccount(AccountSide accountSide, Currency currency, AccountDetails accountDetails, int stripeCount) {
+        this.currency = currency;
+        this.accountDetails = accountDetails;
+
+        stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripeCount) * 2 - 1)];
+
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(accountSide);
+        }
+    }
+
+    public HotAccount(AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
+
+        this(accountSide, currency, accountDetails, STRIPES);
+    }
+
+    public static Account makeAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
+        return new HotAccount(accountSide, currency, accountDetails);
+    }
+
+    /**
+     * @param entry {@link Entry} to be added to this
+     */
+    @Override
+    public void addEntry(Entry entry) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        log.debug("Adding entry to account : {}", entry);
+
+        AccountSupport.checkEntry(entry, accountDetails, currency);
+
+        Stripe stripe = acquire();
+        try {
+            AccountSupport.checkNotClosed(entry, latestClosingDate);
+
+            stripe.entries.add(entry);
+            stripe.index.add(entry);
+            stripe.totals = stripe.totals.add(entry);
+
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        log.debug("Entry : {} has been added into account : {}", entry, this);
+    }
+
+    /**
+     * Adds a batch of entries, all into the one stripe. Every entry is checked before any is appended
+     *
+     * @param entries {@link Entry} items to be added to this
+     */
+    @Override
+    public void addEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        log.debug("Adding {} entries to account : {}", entries.size(), this);
+
+        for (Entry entry : entries) {
+            AccountSupport.checkEntry(entry, accountDetails, currency);
+        }
+
+        Stripe stripe = acquire();
+        try {
+            for (Entry entry : entries) {
+                AccountSupport.checkNotClosed(entry, latestClosingDate);
+            }
+
+            stripe.entries.addAll(entries);
+            stripe.index.addAll(entries);
+            stripe.totals = stripe.totals.addAll(entries);
+
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        log.debug("{} entries have been added into account : {}", entries.size(), this);
+    }
+
+    @Override
+    public void checkEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        for (Entry entry : entries) {
+            AccountSupport.checkEntry(entry, accountDetails, currency);
+            AccountSupport.checkNotClosed(entry, latestClosingDate);
+        }
+    }
+
+    /*
+     * Takes the first free stripe starting from one picked by the thread's id, or waits on that one if none is free
+     */
+    private Stripe acquire() {
+
+        int home = (int) Thread.currentThread().getId();
+        int mask = stripes.length - 1;
+
+        for (int i = 0; i < stripes.length; i++) {
+
+            Stripe stripe = stripes[(home + i) & mask];
+
+            if (stripe.lock.tryLock()) {
+                return stripe;
+            }
+        }
+
+        Stripe stripe = stripes[home & mask];
+
+        stripe.lock.lock();
+
+        return stripe;
+    }
+
+    /**
+     * Closes the accounting period ending on the closing date, while holding every stripe so that no entry is being
+     * added, and the account's {@link PostingLocks} so that no transaction is half way through posting to it
+     *
+     * @param closingDate {@link TimePoint} of the last day of the period being closed
+     * @return {@link AccountBalance} as at the closing date
+     */
+    @Override
+    @SuppressWarnings("try")
+    public AccountBalance closePeriod(TimePoint closingDate) throws UntimelyBookingDateException {
+
+        log.debug("Closing the period ending on {} for account : {}", closingDate, this);
+
+        try (PostingLocks.Hold ignored = PostingLocks.forClosing(this)) {
+
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+            }
+            try {
+                AccountSupport.checkClosingDate(closingDate, accountDetails, latestClosingDate);
+
+                latestClosingDate = closingDate;
+
+                AccountBalance balance = balance(closingDate);
+
+                log.debug("Period ending on {} closed for account : {} with balance : {}", closingDate, this, balance);
+
+                return balance;
+
+            } finally {
+                for (int i = stripes.length - 1; i >= 0; i--) {
+                    stripes[i].lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the balance of the Account, adding up the stripes without taking any lock
+     *
+     * @param asAt {@link TimePoint} at which is Effective
+     * @return {@link AccountBalance}
+     */
+    @Override
+    public AccountBalance balance(TimePoint asAt) {
+
+        long[] sums = sumsAsAt(asAt);
+
+        return appraisalDelegate.balance(sums[0], sums[1], getAccountSide());
+    }
+
+    /**
+     * @param asAt {@link TimePoint} at which is Effective
+     * @return Debits less credits as at the date in minor units, added up over the stripes
+     */
+    @Override
+    public long balanceMinorUnits(TimePoint asAt) {
+
+        long[] sums = sumsAsAt(asAt);
+
+        return sums[0] - sums[1];
+    }
+
+    private long[] sumsAsAt(TimePoint asAt) {
+
+        long[] sums = new long[2];
+
+        for (Stripe stripe : stripes) {
+
+            RunningTotals totals = stripe.totals;
+
+            if (totals.covers(asAt)) {
+
+                sums[0] += totals.getDebits();
+                sums[1] += totals.getCredits();
+
+            } else {
+
+                BookingDateIndex.Sums stripeSums = stripe.index.sumsAsAt(asAt);
+
+                sums[0] += stripeSums.getDebits();
+                sums[1] += stripeSums.getCredits();
+            }
+        }
+
+        return sums;
+    }
+
+    @Override
+    public AccountBalance balance(int... asAt) {
+
+        AccountBalance balance = balance(new SimpleDate(asAt[0], asAt[1], asAt[2]));
+
+        log.debug("Returning accounting balance for {} ,as at : {} as : {}", this, Arrays.toString(asAt), balance);
+
+        return balance;
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public TimePoint getOpeningDate() {
+        return this.accountDetails.getOpeningDate();
+    }
+
+    /**
+     * @return Read-only view of the {@link Entry} items added so far, stripe after stripe. Entries added later are not
+     * in the view
+     */
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Entry> getEntries() {
+
+        List<Entry>[] logs = new List[stripes.length];
+        int[] ends = new int[stripes.length];
+
+        int size = 0;
+
+        for (int i = 0; i < stripes.length; i++) {
+            logs[i] = stripes[i].entries;
+            size += logs[i].size();
+            ends[i] = size;
+        }
+
+        return Collections.unmodifiableList(new StripedEntries(logs, ends));
+    }
+
+    /**
+     * @return {@link TimePoint} closing date of the latest period closed, or null if none has been closed
+     */
+    TimePoint getLatestClosingDate() {
+        return latestClosingDate;
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public String toString() {
+        return this.accountDetails.getName() + " " + this.accountDetails.getNumber();
+    }
+
+    /**
+     * @return {@link AccountSide} as published in the {@link RunningTotals} of the stripes, all of which carry the same
+     * side
+     */
+    @Override
+    public AccountSide getAccountSide() {
+
+        return stripes[0].totals.getAccountSide() == DEBIT ? DEBIT : CREDIT;
+    }
+
+    @Override
+    public AccountDetails getAccountDetails() {
+
+        return accountDetails;
+    }
+
+    /**
+     * Publishes the side in the {@link RunningTotals} of every stripe, holding every stripe so that no entry is
+     * being added meanwhile
+     *
+     * @param accountSide {@link AccountSide} to which this account belongs by default from now on
+     */
+    @Override
+    public void setAccountSide(final AccountSide accountSide) {
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.totals = stripe.totals.withAccountSide(accountSide);
+            }
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * One stripe of the account, guarded by its lock for adding and read without it
+     */
+    private final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final ChunkedAppendLog<Entry> entries = new ChunkedAppendLog<>();
+
+        private final BookingDateIndex index = new BookingDateIndex(HotAccount.this);
+
+        private volatile RunningTotals totals;
+
+        private Stripe(AccountSide accountSide) {
+            this.totals = RunningTotals.opening(accountSide);
+        }
+    }
+
+    /*
+     * The logs of the stripes one after the other, up to the sizes they had when the view was made
+     */
+    private static final class StripedEntries extends AbstractList<Entry> implements RandomAccess {
+
+        private final List<Entry>[] logs;
+
+        // running total of the sizes of the logs
+        private final int[] ends;
+
+        private StripedEntries(List<Entry>[] logs, int[] ends) {
+            this.logs = logs;
+            this.ends = ends;
+        }
+
+        @Override
+        public Entry get(int index) {
+
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+
+            int stripe = 0;
+
+            while (index >= ends[stripe]) {
+                stripe++;
+            }
+
+            return logs[stripe].get(stripe == 0 ? index : index - ends[stripe - 1]);
+        }
+
+        @Override
+        public int size() {
+            return ends[ends.length - 1];
+        }
+    }
+}
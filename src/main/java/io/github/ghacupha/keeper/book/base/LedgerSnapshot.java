@@ -0,0 +1,555 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A snapshot of the {@link Account}s of a ledger in a compact binary file, from which the ledger is restored on start
+ * up instead of replaying the whole {@link PostingJournal}. The snapshot records how many journal records it takes in,
+ * so that only the records appended after it are replayed by {@link #replay(Path)}.
+ * The file starts with a header of the {@link #MAGIC} number, the format version, the journal sequence and the number
+ * of accounts. Each account follows as its name, number, opening day, side, currency code and latest closing day, the
+ * narrations of its {@link EntryDetails}, each kept once, and its entries as fixed width records of the amount in
+ * minor units (long), the booking day (int) and the reference to the narration with the side in its lowest bit (int).
+ * Strings are written as their length and UTF-8 bytes. Other attributes of the account and entry details are not
+ * kept, since they may be any object at all.
+ * Accounts are restored as {@link ColumnarAccount}s whose entries are read straight into the columns of an
+ * {@link EntryStore}, and the latest period closed is closed again. The snapshot is written under the read
+ * {@link PostingLocks} of the accounts, as a {@link io.github.ghacupha.keeper.book.balance.TrialBalance} is read, so
+ * that it takes in either all of the legs of a transaction or none of them; given the journal itself, the sequence is
+ * read under the same locks.
+ *
+ * @author edwin.njeru
+ */
+public final class LedgerSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerSnapshot.class);
+
+    static final int MAGIC = 0x424B534E;
+
+    static final int VERSION = 1;
+
+    private static final int NO_CLOSING_DAY = Integer.MIN_VALUE;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    // by account number, in the order they were written
+    private final Map<String, Account> accounts;
+
+    private volatile long journalSequence;
+
+    private LedgerSnapshot(Map<String, Account> accounts, long journalSequence) {
+        this.accounts = accounts;
+        this.journalSequence = journalSequence;
+    }
+
+    /**
+     * Writes a snapshot of the accounts, over the file if it exists
+     *
+     * @param file            {@link Path} of the snapshot file
+     * @param accounts        {@link Account}s of the ledger, with unique numbers
+     * @param journalSequence Number of {@link PostingJournal} records whose postings are in the accounts
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Collection<? extends Account> accounts, long journalSequence) throws IOException {
+
+        write(file, accounts, () -> journalSequence);
+    }
+
+    /**
+     * Writes a snapshot of the accounts, over the file if it exists, taking in every record of the journal. Records
+     * are written to the journal under the posting locks of their accounts, so the journal's sequence is read once
+     * the read locks of the accounts are held, and stays with the postings in them for as long as the snapshot is
+     * being written. Every account posted to through the journal is to be in the snapshot.
+     * Accounts owned by a {@link PostingEngine} are not posted to under their posting locks, and a transaction across
+     * its shards is journaled on one shard before it is applied on the others, so their snapshot is to be taken through
+     * {@link PostingEngine#snapshot(Path, Collection, PostingJournal)} instead
+     *
+     * @param file     {@link Path} of the snapshot file
+     * @param accounts {@link Account}s of the ledger, with unique numbers
+     * @param journal  {@link PostingJournal} through which the accounts are posted to
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Collection<? extends Account> accounts, PostingJournal journal) throws IOException {
+
+        write(file, accounts, journal::size);
+    }
+
+    @SuppressWarnings("try")
+    private static void write(Path file, Collection<? extends Account> accounts, LongSupplier sequence) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+             PostingLocks.Hold ignored = PostingLocks.forReading(accounts)) {
+
+            long journalSequence = sequence.getAsLong();
+
+            Output out = new Output(channel);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(journalSequence);
+            out.putInt(accounts.size());
+
+            long entries = 0;
+
+            for (Account account : accounts) {
+                entries += write(out, account);
+            }
+
+            out.flush();
+            channel.force(true);
+
+            log.debug("Written a snapshot of {} accounts and {} entries to {}", accounts.size(), entries, file);
+        }
+    }
+
+    private static int write(Output out, Account account) throws IOException {
+
+        AccountDetails details = account.getAccountDetails();
+
+        out.putString(details.getName());
+        out.putString(details.getNumber());
+        out.putInt(EpochDays.of(details.getOpeningDate()));
+        out.put((byte) (account.getAccountSide() == DEBIT ? 1 : 0));
+        out.putString(account.getCurrency().getCurrencyCode());
+
+        TimePoint closingDate = latestClosingDate(account);
+        out.putInt(closingDate == null ? NO_CLOSING_DAY : EpochDays.of(closingDate));
+
+        EntryStore store = storeOf(account);
+
+        int size = store.size();
+
+        // each entry details object gets a reference the first time it is met
+        Map<EntryDetails, Integer> references = new IdentityHashMap<>();
+        List<EntryDetails> table = new ArrayList<>();
+        int[] entryReferences = new int[size];
+
+        for (int position = 0; position < size; position++) {
+
+            EntryDetails entryDetails = store.entryDetails(position);
+
+            Integer reference = references.get(entryDetails);
+
+            if (reference == null) {
+                reference = table.size();
+                references.put(entryDetails, reference);
+                table.add(entryDetails);
+            }
+
+            entryReferences[position] = reference;
+        }
+
+        out.putInt(table.size());
+
+        for (EntryDetails entryDetails : table) {
+            out.putString(String.valueOf(entryDetails.getNarration()));
+        }
+
+        out.putInt(size);
+
+        for (int position = 0; position < size; position++) {
+
+            out.ensure(16);
+            out.buffer.putLong(store.amountMinorUnits(position));
+            out.buffer.putInt(store.bookingDay(position));
+            out.buffer.putInt(entryReferences[position] << 1 | (store.isDebit(position) ? 1 : 0));
+        }
+
+        return size;
+    }
+
+    private static EntryStore storeOf(Account account) {
+
+        if (account instanceof ColumnarAccount) {
+            return ((ColumnarAccount) account).getEntryStore();
+        }
+
+        HeapEntryStore store = new HeapEntryStore(account.getCurrency());
+
+        for (Entry entry : account.getEntries()) {
+            store.append(entry.getAmountMinorUnits(), EpochDays.of(entry.getBookingDate()), entry.getAccountSide() == DEBIT, entry.getEntryDetails());
+        }
+
+        return store;
+    }
+
+    private static TimePoint latestClosingDate(Account account) {
+
+        if (account instanceof ColumnarAccount) {
+            return ((ColumnarAccount) account).getLatestClosingDate();
+        } else if (account instanceof SimpleAccount) {
+            return ((SimpleAccount) account).getLatestClosingDate();
+        } else if (account instanceof HotAccount) {
+            return ((HotAccount) account).getLatestClosingDate();
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads the accounts back from a snapshot
+     *
+     * @param file {@link Path} of the snapshot file
+     * @return {@link LedgerSnapshot} of the accounts restored
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static LedgerSnapshot read(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+
+            Input in = new Input(channel);
+
+            if (in.getInt() != MAGIC) {
+                throw new IOException(file + " is not a ledger snapshot");
+            }
+
+            int version = in.getInt();
+
+            if (version != VERSION) {
+                throw new IOException("Snapshot version " + version + " of " + file + " is not supported");
+            }
+
+            long journalSequence = in.getLong();
+
+            int count = in.getInt();
+
+            Map<String, Account> accounts = new LinkedHashMap<>();
+
+            for (int i = 0; i < count; i++) {
+
+                Account account = read(in);
+
+                accounts.put(account.getAccountDetails().getNumber(), account);
+            }
+
+            log.debug("Restored {} accounts from {} up to journal record {}", count, file, journalSequence);
+
+            return new LedgerSnapshot(accounts, journalSequence);
+        }
+    }
+
+    private static Account read(Input in) throws IOException {
+
+        String name = in.getString();
+        String number = in.getString();
+        TimePoint openingDate = EpochDays.toTimePoint(in.getInt());
+        AccountSide side = in.get() == 1 ? DEBIT : CREDIT;
+        Currency currency = Currency.getInstance(in.getString());
+        int closingDay = in.getInt();
+
+        EntryDetails[] details = new EntryDetails[in.getInt()];
+
+        for (int i = 0; i < details.length; i++) {
+            details[i] = new EntryDetails(in.getString());
+        }
+
+        HeapEntryStore store = new HeapEntryStore(currency);
+
+        for (int remaining = in.getInt(); remaining > 0; remaining--) {
+
+            in.ensure(16);
+
+            long amount = in.buffer.getLong();
+            int day = in.buffer.getInt();
+            int reference = in.buffer.getInt();
+
+            store.append(amount, day, (reference & 1) == 1, details[reference >>> 1]);
+        }
+
+        ColumnarAccount account = new ColumnarAccount(side, currency, new AccountDetails(name, number, openingDate), store);
+
+        if (closingDay != NO_CLOSING_DAY) {
+
+            try {
+                account.closePeriod(EpochDays.toTimePoint(closingDay));
+            } catch (UntimelyBookingDateException e) {
+                throw new IOException("The snapshot of account " + number + " has a closing date before its opening date", e);
+            }
+        }
+
+        return account;
+    }
+
+    /**
+     * Posts the transactions appended to the journal after this snapshot was taken into the accounts
+     *
+     * @param journal {@link Path} of the {@link PostingJournal} file
+     * @return Number of transactions posted
+     * @throws IOException if the journal cannot be read, or a record in it is corrupt or its transaction cannot be
+     *                     posted, in which case the message names the record, none of the legs of that transaction is
+     *                     posted and the journal sequence counts the records before it, which are
+     */
+    public synchronized long replay(Path journal) throws IOException {
+
+        long replayed;
+
+        // the sequence is moved on as each record is posted, so that it stays true of the records before a bad one
+        try {
+            replayed = PostingJournal.replay(journal, journalSequence, this::post);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        log.debug("Replayed {} transactions from {}", replayed, journal);
+
+        return replayed;
+    }
+
+    /*
+     * Posts the record after the journal sequence, written by SimpleTransaction, all of its legs or none of them
+     */
+    @SuppressWarnings("try")
+    private void post(ByteBuffer payload) {
+
+        long sequence = journalSequence + 1;
+
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+
+        String label;
+
+        Map<Account, List<Entry>> legs = new IdentityHashMap<>();
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+
+            label = in.readUTF();
+            TimePoint date = EpochDays.toTimePoint(in.readInt());
+            Currency currency = Currency.getInstance(in.readUTF());
+
+            for (int count = in.readInt(); count > 0; count--) {
+
+                AccountSide side = in.readBoolean() ? DEBIT : CREDIT;
+                long amount = in.readLong();
+                String number = in.readUTF();
+                String narration = in.readUTF();
+
+                Account account = accounts.get(number);
+
+                if (account == null) {
+                    throw new IOException("The transaction " + label + " in journal record " + sequence + " is posted into the account " + number + " which is not in the snapshot");
+                }
+
+                legs.computeIfAbsent(account, key -> new ArrayList<>())
+                    .add(new SimpleEntry(side, account, MinorUnits.toCash(amount, currency), date, new EntryDetails(narration)));
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            // an amount too large to be cash, or a currency code which is none
+            throw new UncheckedIOException(new IOException("The journal record " + sequence + " is corrupt", e));
+        }
+
+        try (PostingLocks.Hold ignored = PostingLocks.forPosting(legs.keySet())) {
+
+            for (Map.Entry<Account, List<Entry>> leg : legs.entrySet()) {
+                leg.getKey().checkEntries(leg.getValue());
+            }
+
+            for (Map.Entry<Account, List<Entry>> leg : legs.entrySet()) {
+                leg.getKey().addEntries(leg.getValue());
+            }
+
+        } catch (MismatchedCurrencyException | UntimelyBookingDateException e) {
+            throw new UncheckedIOException(new IOException("The transaction " + label + " in journal record " + sequence + " could not be posted", e));
+        }
+
+        journalSequence = sequence;
+    }
+
+    /**
+     * @return {@link Account}s restored, by their numbers
+     */
+    public Map<String, Account> getAccounts() {
+
+        return Collections.unmodifiableMap(accounts);
+    }
+
+    /**
+     * @return Number of {@link PostingJournal} records whose postings are in the accounts
+     */
+    public long getJournalSequence() {
+
+        return journalSequence;
+    }
+
+    /*
+     * Buffered writes to a channel
+     */
+    private static final class Output {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            buffer.clear();
+        }
+
+        private void put(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        private void putString(String value) throws IOException {
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            putInt(bytes.length);
+
+            for (int offset = 0; offset < bytes.length; ) {
+
+                ensure(1);
+
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+
+                buffer.put(bytes, offset, length);
+
+                offset += length;
+            }
+        }
+    }
+
+    /*
+     * Buffered reads from a channel
+     */
+    private static final class Input {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        private Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        private void ensure(int bytes) throws IOException {
+
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+
+            buffer.compact();
+
+            while (buffer.position() < bytes) {
+
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("The snapshot ends in the middle of a record");
+                }
+            }
+
+            buffer.flip();
+        }
+
+        private byte get() throws IOException {
+            ensure(1);
+            return buffer.get();
+        }
+
+        private int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        private long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        private String getString() throws IOException {
+
+            byte[] bytes = new byte[getInt()];
+
+            for (int offset = 0; offset < bytes.length; ) {
+
+                ensure(1);
+
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+
+                buffer.get(bytes, offset, length);
+
+                offset += length;
+            }
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
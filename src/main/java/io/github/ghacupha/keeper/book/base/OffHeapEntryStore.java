@@ -0,0 +1,320 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * {@link EntryStore} keeping its entries outside of the heap, in fixed width records of {@link #RECORD_BYTES} bytes
+ * laid out as the amount in minor units (long), the booking day (int) and the {@link EntryDetails} reference with the
+ * side folded into its lowest bit (int). The records are written into chunks of {@link #CHUNK_RECORDS} records, which
+ * are either direct {@link ByteBuffer}s or regions of a memory-mapped file, so that the garbage collector never has to
+ * go through them however many entries there are. Chunks are never moved once made, growing the store only adds a
+ * chunk, and adding up the entries reads the records straight out of the chunks without making any object.
+ * The {@link EntryDetails} themselves are still objects on the heap, in a table of references which takes a slot for
+ * each entry whose details are not those of the entry before it, as a {@link HeapEntryStore} keeps them.
+ * Direct chunks count against the limit set by {@code -XX:MaxDirectMemorySize}, which is the maximum heap size unless
+ * set, so a JVM keeping many entries in direct stores must be given a limit of at least {@link #RECORD_BYTES} bytes
+ * for each entry, in whole chunks of a MiB for each store, on top of whatever else it allocates directly. Mapped chunks
+ * do not count against it. The chunks are freed when the store is closed, and are otherwise only freed once the
+ * garbage collector has found the store unreachable, which it may put off for as long as the heap has room.
+ *
+ * @author edwin.njeru
+ */
+final class OffHeapEntryStore implements EntryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapEntryStore.class);
+
+    static final int RECORD_BYTES = 16;
+
+    static final int CHUNK_RECORDS = 1 << 16;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    private static final int AMOUNT_OFFSET = 0;
+    private static final int DAY_OFFSET = 8;
+    private static final int REFERENCE_OFFSET = 12;
+
+    private static final Consumer<ByteBuffer> FREE = freeing();
+
+    private final Currency currency;
+
+    // null for direct buffers
+    private final Path file;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    private volatile EntryDetails[] details = new EntryDetails[HeapEntryStore.INITIAL_CAPACITY];
+
+    private volatile int size;
+
+    // slots of the details table taken, only used while appending
+    private int detailsCount;
+
+    // only used while appending or closing
+    private boolean closed;
+
+    private OffHeapEntryStore(Currency currency, Path file) {
+        this.currency = currency;
+        this.file = file;
+    }
+
+    /**
+     * @param currency {@link Currency} of the amounts
+     * @return Store keeping its records in direct {@link ByteBuffer}s
+     */
+    static OffHeapEntryStore direct(Currency currency) {
+
+        return new OffHeapEntryStore(currency, null);
+    }
+
+    /**
+     * @param currency {@link Currency} of the amounts
+     * @param file     {@link Path} of the file to be mapped, which is created if it does not exist and written over
+     *                 from the start if it does
+     * @return Store keeping its records in the file, mapped into memory a chunk at a time
+     */
+    static OffHeapEntryStore mapped(Currency currency, Path file) {
+
+        return new OffHeapEntryStore(currency, file);
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void append(long amountMinorUnits, int bookingDay, boolean debit, EntryDetails entryDetails) {
+
+        if (closed) {
+            throw new IllegalStateException("Entries cannot be added to a closed store");
+        }
+
+        int position = size;
+
+        ByteBuffer[] current = chunks;
+
+        int chunk = position >>> CHUNK_SHIFT;
+
+        if (chunk == current.length) {
+
+            current = Arrays.copyOf(current, chunk + 1);
+            current[chunk] = newChunk(chunk);
+
+            chunks = current;
+        }
+
+        EntryDetails[] table = details;
+
+        int reference = detailsCount - 1;
+
+        if (reference < 0 || table[reference] != entryDetails) {
+
+            reference = detailsCount++;
+
+            if (reference == table.length) {
+                table = Arrays.copyOf(table, reference << 1);
+            }
+
+            table[reference] = entryDetails;
+
+            details = table;
+        }
+
+        ByteBuffer buffer = current[chunk];
+
+        int offset = (position & CHUNK_MASK) * RECORD_BYTES;
+
+        buffer.putLong(offset + AMOUNT_OFFSET, amountMinorUnits);
+        buffer.putInt(offset + DAY_OFFSET, bookingDay);
+        buffer.putInt(offset + REFERENCE_OFFSET, reference << 1 | (debit ? 1 : 0));
+
+        size = position + 1;
+    }
+
+    private ByteBuffer newChunk(int chunk) {
+
+        if (file == null) {
+
+            return ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_BYTES).order(ByteOrder.nativeOrder());
+        }
+
+        // the mapping stays valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long) chunk * CHUNK_RECORDS * RECORD_BYTES, CHUNK_RECORDS * RECORD_BYTES)
+                .order(ByteOrder.nativeOrder());
+
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map chunk " + chunk + " of " + file, e);
+        }
+    }
+
+    @Override
+    public long amountMinorUnits(int position) {
+        return chunks[position >>> CHUNK_SHIFT].getLong((position & CHUNK_MASK) * RECORD_BYTES + AMOUNT_OFFSET);
+    }
+
+    @Override
+    public int bookingDay(int position) {
+        return chunks[position >>> CHUNK_SHIFT].getInt((position & CHUNK_MASK) * RECORD_BYTES + DAY_OFFSET);
+    }
+
+    @Override
+    public boolean isDebit(int position) {
+        return (reference(position) & 1) == 1;
+    }
+
+    @Override
+    public EntryDetails entryDetails(int position) {
+        return details[reference(position) >>> 1];
+    }
+
+    private int reference(int position) {
+        return chunks[position >>> CHUNK_SHIFT].getInt((position & CHUNK_MASK) * RECORD_BYTES + REFERENCE_OFFSET);
+    }
+
+    @Override
+    public void sum(int from, int to, int firstDay, int lastDay, long[] sums) {
+
+        ByteBuffer[] current = chunks;
+
+        long debits = 0;
+        long credits = 0;
+
+        int position = from;
+
+        while (position < to) {
+
+            ByteBuffer buffer = current[position >>> CHUNK_SHIFT];
+
+            // the last position in this chunk, or the end of the range if sooner
+            int end = Math.min(to, (position | CHUNK_MASK) + 1);
+
+            for (int offset = (position & CHUNK_MASK) * RECORD_BYTES; position < end; position++, offset += RECORD_BYTES) {
+
+                int day = buffer.getInt(offset + DAY_OFFSET);
+
+                if (day >= firstDay && day <= lastDay) {
+
+                    if ((buffer.getInt(offset + REFERENCE_OFFSET) & 1) == 1) {
+                        debits += buffer.getLong(offset + AMOUNT_OFFSET);
+                    } else {
+                        credits += buffer.getLong(offset + AMOUNT_OFFSET);
+                    }
+                }
+            }
+        }
+
+        sums[0] += debits;
+        sums[1] += credits;
+    }
+
+    /**
+     * Frees the chunks, after which the store is empty and takes no more entries. Mapped chunks are unmapped, leaving
+     * the records in the file
+     */
+    @Override
+    public synchronized void close() {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        ByteBuffer[] freed = chunks;
+
+        // readers coming after this find no entries rather than freed memory
+        size = 0;
+        chunks = new ByteBuffer[0];
+        details = new EntryDetails[0];
+
+        for (ByteBuffer chunk : freed) {
+            FREE.accept(chunk);
+        }
+    }
+
+    /*
+     * Frees a direct or mapped buffer without waiting for it to be collected, through Unsafe.invokeCleaner from Java 9
+     * and the buffer's own cleaner before that. Where neither can be had the buffers are left to the collector
+     */
+    private static Consumer<ByteBuffer> freeing() {
+
+        try {
+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+
+            Object unsafe = theUnsafe.get(null);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+
+        } catch (ReflectiveOperationException | RuntimeException beforeJava9) {
+
+            try {
+
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+
+                return buffer -> invoke(clean, invoke(cleaner, buffer));
+
+            } catch (ReflectiveOperationException | RuntimeException e) {
+
+                log.warn("Off-heap chunks cannot be freed on this runtime, and are left to the garbage collector", e);
+
+                return buffer -> { };
+            }
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) {
+
+        try {
+            return method.invoke(target, arguments);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not free an off-heap chunk", e);
+        }
+    }
+}
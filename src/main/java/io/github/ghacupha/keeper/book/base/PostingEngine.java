@@ -0,0 +1,745 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.TrialBalance;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.PostingExecutor;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Posts transactions through a number of shards, each of which owns the {@link Account} items mapped to it by account
+ * number and is the only thread ever to add entries to them. Each shard takes its work from a lock-free queue, so that
+ * threads submitting transactions never wait on one another nor on an account.
+ * A transaction whose accounts all belong to one shard is checked and applied by that shard in one go. A transaction
+ * across shards is committed in two phases: each shard concerned checks its legs and votes, reserving its accounts
+ * against periods being closed until the outcome is known but going on with other work meanwhile, and the shard casting
+ * the last vote journals the transaction if it is to be committed and sends the outcome to every shard concerned, which
+ * then applies or drops its legs. None of the legs is applied unless all of them can be. An account, or anything else
+ * in the way of posting, failing with an exception it does not declare refuses the transaction as an account refusing
+ * its entries does, so that every shard concerned still votes and lets go of its accounts.
+ * The shards only write transactions to their journals. Waiting for the records to be durable, and completing the
+ * futures handed out, is done on a separate {@link Executor}, so that no shard waits out a sync, and whatever a caller
+ * chains on a future, such as taking a trial balance, runs off the shards and can itself wait on them.
+ * The accounts belong to the engine once transactions are submitted for them: their periods should be closed through
+ * {@link #closePeriod(Account, TimePoint)}, their trial balance taken through
+ * {@link #trialBalance(Collection, TimePoint)} and their snapshot through
+ * {@link #snapshot(Path, Collection, PostingJournal)}, each of which sees every transaction either whole or not at all.
+ *
+ * @author edwin.njeru
+ */
+public final class PostingEngine implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingEngine.class);
+
+    private final Shard[] shards;
+
+    // outcomes of transactions across shards and halting barriers are queued under this lock, so that every shard
+    // sees them in the same order
+    private final ReentrantLock outcomeLock = new ReentrantLock();
+
+    // guarded by the outcome lock: halts under way, and the transactions across shards which are to be decided once
+    // there are none
+    private int halts;
+    private final List<Commit> decisionsDeferred = new ArrayList<>();
+
+    private final Executor completions;
+
+    // taken to submit work, and exclusively to stop taking any
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean stopped;
+
+    // work submitted and not yet done, which closing waits for
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Condition idle = idleLock.newCondition();
+
+    private PostingEngine(int shardCount, Executor completions) {
+
+        this.completions = completions;
+
+        shards = new Shard[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+
+        for (Shard shard : shards) {
+            shard.worker.start();
+        }
+    }
+
+    /**
+     * @param shards Number of shards, each with a thread of its own, which is typically the number of processors
+     * @return {@link PostingEngine} whose shards are running, completing its futures on the
+     * {@link PostingExecutor#getDefault() default posting executor}
+     */
+    public static PostingEngine start(int shards) {
+
+        return start(shards, PostingExecutor.getDefault());
+    }
+
+    /**
+     * @param shards      Number of shards, each with a thread of its own, which is typically the number of processors
+     * @param completions {@link Executor} on which the engine waits for journals to be durable and completes its
+     *                    futures
+     * @return {@link PostingEngine} whose shards are running
+     */
+    public static PostingEngine start(int shards, Executor completions) {
+
+        if (shards < 1) {
+            throw new IllegalArgumentException("A posting engine needs at least one shard, not " + shards);
+        }
+
+        log.debug("Starting posting engine with {} shards", shards);
+
+        return new PostingEngine(shards, completions);
+    }
+
+    /**
+     * Submits a transaction to be posted by the shards owning its accounts. Only a {@link SimpleTransaction} can be
+     * posted through the engine, since the shards must add every entry to their accounts themselves
+     *
+     * @param transaction {@link Transaction} to be posted
+     * @return {@link CompletableFuture} completed with the transaction once all of its entries are posted and as
+     * durable as its journal says, or exceptionally with an {@link UnableToPostException} if none of them is, or with a
+     * {@link RejectedExecutionException} if the engine has been closed
+     */
+    public CompletableFuture<Transaction> submit(Transaction transaction) {
+
+        CompletableFuture<Transaction> posted = new CompletableFuture<>();
+
+        if (!(transaction instanceof SimpleTransaction)) {
+            posted.completeExceptionally(new UnableToPostException("Only a SimpleTransaction can be posted through the engine, not " + transaction.getClass().getName()));
+            return posted;
+        }
+
+        SimpleTransaction simpleTransaction = (SimpleTransaction) transaction;
+
+        try {
+            simpleTransaction.checkBalanced();
+        } catch (UnableToPostException e) {
+            posted.completeExceptionally(e);
+            return posted;
+        }
+
+        Map<Shard, Map<Account, List<Entry>>> legsByShard = new IdentityHashMap<>();
+
+        SimpleTransaction.legsByAccount(Collections.singletonList(simpleTransaction)).forEach((account, legs) ->
+            legsByShard.computeIfAbsent(shardOf(account), shard -> new IdentityHashMap<>()).put(account, legs));
+
+        closing.readLock().lock();
+        try {
+            admit();
+
+            if (legsByShard.size() == 1) {
+
+                Map.Entry<Shard, Map<Account, List<Entry>>> only = legsByShard.entrySet().iterator().next();
+
+                only.getKey().enqueue(() -> postWithinShard(simpleTransaction, only.getValue(), posted));
+
+            } else {
+
+                Commit commit = new Commit(simpleTransaction, posted, legsByShard);
+
+                for (Part part : commit.parts) {
+                    part.shard.enqueue(() -> commit.prepare(part));
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            posted.completeExceptionally(e);
+        } finally {
+            closing.readLock().unlock();
+        }
+
+        return posted;
+    }
+
+    /**
+     * Closes a period of an account on the shard owning it, once no transaction across shards is waiting to be
+     * committed to the account
+     *
+     * @param account     {@link Account} whose period is to be closed
+     * @param closingDate {@link TimePoint} of the last day of the period
+     * @return {@link CompletableFuture} completed with the {@link AccountBalance} as at the closing date, or
+     * exceptionally with an {@link UntimelyBookingDateException} if the period cannot be closed, with an
+     * {@link UnsupportedOperationException} if the account keeps no periods, or with a
+     * {@link RejectedExecutionException} if the engine has been closed
+     */
+    public CompletableFuture<AccountBalance> closePeriod(Account account, TimePoint closingDate) {
+
+        CompletableFuture<AccountBalance> closed = new CompletableFuture<>();
+
+        Shard shard = shardOf(account);
+
+        closing.readLock().lock();
+        try {
+            admit();
+
+            shard.enqueue(() -> shard.close(account, closingDate, closed));
+
+        } catch (RejectedExecutionException e) {
+            closed.completeExceptionally(e);
+        } finally {
+            closing.readLock().unlock();
+        }
+
+        return closed;
+    }
+
+    /**
+     * Takes a trial balance of accounts owned by the engine. Every shard is brought to a halt at the same point in the
+     * stream of transactions, so that no transaction is posted on some shards and not yet on others, and held there
+     * while the balances are taken
+     *
+     * @param accounts {@link Account} items in the trial balance
+     * @param asAt     {@link TimePoint} as at which the accounts are balanced
+     * @return {@link TrialBalance} of the accounts
+     * @throws MismatchedCurrencyException if the accounts are not all in the same currency
+     * @throws InterruptedException        if interrupted while waiting for the shards to halt
+     * @throws RejectedExecutionException  if the engine has been closed
+     */
+    public TrialBalance trialBalance(Collection<? extends Account> accounts, TimePoint asAt) throws MismatchedCurrencyException, InterruptedException {
+
+        CountDownLatch taken = new CountDownLatch(1);
+
+        CountDownLatch halted = halt(taken);
+
+        try {
+            halted.await();
+
+            return TrialBalance.of(accounts, asAt);
+
+        } finally {
+            resume(taken);
+        }
+    }
+
+    /**
+     * Writes a {@link LedgerSnapshot} of accounts owned by the engine. The shards are halted as they are for a trial
+     * balance, and no transaction across shards is written to the journal while they are, so that the sequence of
+     * the journal taken in by the snapshot covers exactly the transactions whose entries are in it.
+     * {@link LedgerSnapshot#write(Path, Collection, PostingJournal)} is not to be called directly on accounts owned
+     * by an engine, since the engine does not take their {@link PostingLocks}
+     *
+     * @param file     {@link Path} of the snapshot file
+     * @param accounts {@link Account}s of the ledger, with unique numbers
+     * @param journal  {@link PostingJournal} of the transactions submitted for the accounts
+     * @throws IOException                if the file cannot be written
+     * @throws InterruptedException       if interrupted while waiting for the shards to halt
+     * @throws RejectedExecutionException if the engine has been closed
+     */
+    public void snapshot(Path file, Collection<? extends Account> accounts, PostingJournal journal) throws IOException, InterruptedException {
+
+        CountDownLatch taken = new CountDownLatch(1);
+
+        CountDownLatch halted = halt(taken);
+
+        try {
+            halted.await();
+
+            LedgerSnapshot.write(file, accounts, journal);
+
+        } finally {
+            resume(taken);
+        }
+    }
+
+    // queues a barrier to every shard, each of which counts down the latch returned and waits there until taken
+    private CountDownLatch halt(CountDownLatch taken) {
+
+        CountDownLatch halted = new CountDownLatch(shards.length);
+
+        closing.readLock().lock();
+        try {
+            admit();
+
+            outcomeLock.lock();
+            try {
+                halts++;
+
+                for (Shard shard : shards) {
+                    shard.enqueue(() -> {
+                        halted.countDown();
+                        awaitUninterruptibly(taken);
+                    });
+                }
+            } finally {
+                outcomeLock.unlock();
+            }
+        } finally {
+            closing.readLock().unlock();
+        }
+
+        return halted;
+    }
+
+    // lets the shards go, and decides the transactions across shards which were held back while they were halted
+    private void resume(CountDownLatch taken) {
+
+        taken.countDown();
+
+        outcomeLock.lock();
+        try {
+            if (--halts == 0 && !decisionsDeferred.isEmpty()) {
+
+                List<Commit> deferred = new ArrayList<>(decisionsDeferred);
+
+                decisionsDeferred.clear();
+
+                deferred.forEach(Commit::decideNow);
+            }
+        } finally {
+            outcomeLock.unlock();
+        }
+
+        finished();
+    }
+
+    /**
+     * Stops taking work, and stops the shards once the work already submitted is done
+     */
+    @Override
+    public void close() {
+
+        closing.writeLock().lock();
+        try {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+
+        idleLock.lock();
+        try {
+            while (pending.get() > 0) {
+                idle.awaitUninterruptibly();
+            }
+        } finally {
+            idleLock.unlock();
+        }
+
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.worker);
+        }
+
+        boolean interrupted = false;
+
+        for (Shard shard : shards) {
+            while (shard.worker.isAlive()) {
+                try {
+                    shard.worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    Shard shardOf(Account account) {
+
+        int hash = Objects.hashCode(account.getAccountDetails().getNumber());
+
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    // called holding the read lock of closing
+    private void admit() {
+
+        if (stopped) {
+            throw new RejectedExecutionException("The posting engine has been closed");
+        }
+
+        pending.incrementAndGet();
+    }
+
+    private void finished() {
+
+        if (pending.decrementAndGet() == 0 && stopped) {
+
+            idleLock.lock();
+            try {
+                idle.signalAll();
+            } finally {
+                idleLock.unlock();
+            }
+        }
+    }
+
+    // runs on the shard owning every account of the transaction
+    private void postWithinShard(SimpleTransaction transaction, Map<Account, List<Entry>> legs, CompletableFuture<Transaction> posted) {
+        try {
+            SimpleTransaction.checkLegs(legs);
+            Map<PostingJournal, Long> written = SimpleTransaction.journal(Collections.singletonList(transaction));
+            SimpleTransaction.applyLegs(legs);
+
+            transaction.posted();
+
+            acknowledge(transaction, written, posted);
+
+        } catch (UnableToPostException e) {
+            fail(posted, e);
+        } catch (RuntimeException e) {
+            fail(posted, failed(transaction, e));
+        }
+    }
+
+    // an account or conversion failing in a way it does not declare is refused like any account refusing its entries
+    private static UnableToPostException failed(SimpleTransaction transaction, RuntimeException failure) {
+
+        return new UnableToPostException("The transaction " + transaction + " could not be posted : " + failure, failure);
+    }
+
+    // completes the future once the journal records are durable
+    private void acknowledge(SimpleTransaction transaction, Map<PostingJournal, Long> written, CompletableFuture<Transaction> posted) {
+
+        completeOffShard(posted, () -> {
+            SimpleTransaction.awaitDurable(written);
+            return transaction;
+        });
+    }
+
+    private <T> void fail(CompletableFuture<T> future, Exception failure) {
+
+        completeOffShard(future, () -> {
+            throw failure;
+        });
+    }
+
+    private <T> void completeOffShard(CompletableFuture<T> future, Callable<T> outcome) {
+
+        Runnable completion = () -> {
+
+            T value = null;
+            Exception failure = null;
+
+            try {
+                value = outcome.call();
+            } catch (Exception e) {
+                failure = e;
+            }
+
+            finished();
+
+            if (failure == null) {
+                future.complete(value);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        };
+
+        try {
+            completions.execute(completion);
+        } catch (RejectedExecutionException e) {
+
+            log.warn("The executor of the posting engine's completions refused one, completing it on the shard", e);
+
+            completion.run();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * The legs of a transaction across shards which belong to one shard
+     */
+    private static final class Part {
+
+        private final Shard shard;
+
+        private final Map<Account, List<Entry>> legs;
+
+        // only read and written by the shard's own thread
+        private boolean reserved;
+
+        private Part(Shard shard, Map<Account, List<Entry>> legs) {
+            this.shard = shard;
+            this.legs = legs;
+        }
+    }
+
+    /*
+     * Two phase commit of a transaction across shards, driven by the shards themselves
+     */
+    private final class Commit {
+
+        private final SimpleTransaction transaction;
+
+        private final CompletableFuture<Transaction> posted;
+
+        private final List<Part> parts = new ArrayList<>();
+
+        private final AtomicInteger votesAwaited;
+
+        private final AtomicInteger partsAwaited;
+
+        private final AtomicReference<UnableToPostException> refusal = new AtomicReference<>();
+
+        // set by the shard deciding before the outcome is queued to the others, which the queues make visible to them
+        private Map<PostingJournal, Long> written = Collections.emptyMap();
+
+        private Commit(SimpleTransaction transaction, CompletableFuture<Transaction> posted, Map<Shard, Map<Account, List<Entry>>> legsByShard) {
+            this.transaction = transaction;
+            this.posted = posted;
+
+            legsByShard.forEach((shard, legs) -> parts.add(new Part(shard, legs)));
+
+            votesAwaited = new AtomicInteger(parts.size());
+            partsAwaited = new AtomicInteger(parts.size());
+        }
+
+        // first phase, on the part's shard
+        private void prepare(Part part) {
+
+            try {
+                SimpleTransaction.checkLegs(part.legs);
+
+                part.shard.reserve(part.legs.keySet());
+                part.reserved = true;
+
+            } catch (UnableToPostException e) {
+                refusal.compareAndSet(null, e);
+            } catch (RuntimeException e) {
+                refusal.compareAndSet(null, failed(transaction, e));
+            }
+
+            if (votesAwaited.decrementAndGet() == 0) {
+                decide();
+            }
+        }
+
+        // on the shard which cast the last vote. While the shards are being halted the transaction is neither written
+        // to the journal nor applied, since its outcome could only reach the shards behind the barrier, and it is
+        // decided once they are let go
+        private void decide() {
+
+            outcomeLock.lock();
+            try {
+                if (halts > 0) {
+                    decisionsDeferred.add(this);
+                } else {
+                    decideNow();
+                }
+            } finally {
+                outcomeLock.unlock();
+            }
+        }
+
+        // called holding the outcome lock, so that the record and the outcome are on the same side of any barrier
+        private void decideNow() {
+
+            if (refusal.get() == null) {
+                try {
+                    written = SimpleTransaction.journal(Collections.singletonList(transaction));
+                } catch (UnableToPostException e) {
+                    refusal.compareAndSet(null, e);
+                } catch (RuntimeException e) {
+                    refusal.compareAndSet(null, failed(transaction, e));
+                }
+            }
+
+            boolean commit = refusal.get() == null;
+
+            for (Part part : parts) {
+                part.shard.enqueue(() -> complete(part, commit));
+            }
+        }
+
+        // second phase, on the part's shard
+        private void complete(Part part, boolean commit) {
+
+            if (commit) {
+                try {
+                    SimpleTransaction.applyLegs(part.legs);
+                } catch (UnableToPostException e) {
+                    refusal.compareAndSet(null, e);
+                } catch (RuntimeException e) {
+                    refusal.compareAndSet(null, failed(transaction, e));
+                }
+            }
+
+            if (part.reserved) {
+                part.shard.release(part.legs.keySet());
+            }
+
+            if (partsAwaited.decrementAndGet() == 0) {
+
+                if (commit && refusal.get() == null) {
+                    transaction.posted();
+                    acknowledge(transaction, written, posted);
+                } else {
+                    fail(posted, refusal.get());
+                }
+            }
+        }
+    }
+
+    /*
+     * A worker thread with its queue, and the accounts reserved by transactions across shards waiting for the outcome
+     */
+    final class Shard {
+
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+        private final Thread worker;
+
+        private volatile boolean running = true;
+
+        // only used by the worker
+        private final Map<Account, Integer> reservations = new IdentityHashMap<>();
+        private final List<Runnable> closingsWaiting = new ArrayList<>();
+
+        private Shard(int index) {
+
+            worker = new Thread(this::work, "posting-shard-" + index);
+            worker.setDaemon(true);
+        }
+
+        private void enqueue(Runnable task) {
+
+            queue.offer(task);
+
+            LockSupport.unpark(worker);
+        }
+
+        private void work() {
+
+            while (true) {
+
+                Runnable task = queue.poll();
+
+                if (task != null) {
+
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        log.error("Posting shard {} failed to run a task", worker.getName(), e);
+                    }
+
+                } else if (running) {
+
+                    LockSupport.park(this);
+
+                } else {
+
+                    return;
+                }
+            }
+        }
+
+        private void reserve(Collection<Account> accounts) {
+
+            for (Account account : accounts) {
+                reservations.merge(account, 1, Integer::sum);
+            }
+        }
+
+        private void release(Collection<Account> accounts) {
+
+            for (Account account : accounts) {
+                reservations.computeIfPresent(account, (reserved, count) -> count == 1 ? null : count - 1);
+            }
+
+            if (!closingsWaiting.isEmpty()) {
+
+                List<Runnable> closings = new ArrayList<>(closingsWaiting);
+
+                closingsWaiting.clear();
+
+                closings.forEach(Runnable::run);
+            }
+        }
+
+        private void close(Account account, TimePoint closingDate, CompletableFuture<AccountBalance> closed) {
+
+            if (reservations.containsKey(account)) {
+
+                closingsWaiting.add(() -> close(account, closingDate, closed));
+
+                return;
+            }
+
+            try {
+                AccountBalance balance = account.closePeriod(closingDate);
+
+                completeOffShard(closed, () -> balance);
+
+            } catch (UntimelyBookingDateException | RuntimeException e) {
+                fail(closed, e);
+            }
+        }
+    }
+}
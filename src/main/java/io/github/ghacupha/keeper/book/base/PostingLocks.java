@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Striped locks over {@link Account} items by which a {@link Transaction} touching several accounts is posted as a
+ * whole: the poster holds the write locks of every account in the transaction while applying its legs, so that anyone
+ * holding the read locks of those accounts, such as a {@link io.github.ghacupha.keeper.book.balance.TrialBalance},
+ * sees either all of the legs or none of them.
+ * Each account maps by its number to one of a fixed number of stripes, and the stripes are always taken in ascending
+ * order, which is the one global order that keeps two postings over the same accounts from deadlocking each other.
+ * Postings over accounts on different stripes go ahead side by side.
+ * A {@link HotAccount}, which takes entries from any number of threads at once, is the other way round: it maps to a
+ * stripe of its own kind which postings take shared and readers exclusive, so that postings to the hot account do
+ * not queue up behind one another but a reader still waits for those under way to finish.
+ *
+ * @author edwin.njeru
+ */
+public final class PostingLocks {
+
+    // a power of two
+    static final int STRIPES = 256;
+
+    // stripes of ordinary accounts followed by those of hot accounts
+    private static final ReadWriteLock[] stripes = new ReadWriteLock[STRIPES * 2];
+
+    static {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    private enum Purpose {
+        POSTING, READING, CLOSING
+    }
+
+    private PostingLocks() {
+    }
+
+    /**
+     * Takes the write locks of the accounts, for applying entries to them
+     *
+     * @param accounts {@link Account} items being posted to
+     * @return {@link Hold} on the locks, to be closed once the entries have been applied
+     */
+    public static Hold forPosting(Collection<? extends Account> accounts) {
+
+        return hold(accounts, Purpose.POSTING);
+    }
+
+    /**
+     * Takes the read locks of the accounts, for reading their balances together
+     *
+     * @param accounts {@link Account} items being read
+     * @return {@link Hold} on the locks, to be closed once the balances have been read
+     */
+    public static Hold forReading(Collection<? extends Account> accounts) {
+
+        return hold(accounts, Purpose.READING);
+    }
+
+    /**
+     * Takes the write lock of the account whatever kind of account it is, for closing a period of the account while
+     * no transaction is half way through posting to it
+     *
+     * @param account {@link Account} whose period is being closed
+     * @return {@link Hold} on the lock, to be closed once the period has been closed
+     */
+    public static Hold forClosing(Account account) {
+
+        return hold(Collections.singletonList(account), Purpose.CLOSING);
+    }
+
+    static int stripeOf(Account account) {
+
+        int hash = Objects.hashCode(account.getAccountDetails().getNumber());
+
+        int stripe = (hash ^ (hash >>> 16)) & (STRIPES - 1);
+
+        return account instanceof HotAccount ? STRIPES + stripe : stripe;
+    }
+
+    private static Hold hold(Collection<? extends Account> accounts, Purpose purpose) {
+
+        BitSet held = new BitSet(stripes.length);
+
+        for (Account account : accounts) {
+            held.set(stripeOf(account));
+        }
+
+        Lock[] locks = new Lock[held.cardinality()];
+
+        int count = 0;
+
+        for (int stripe = held.nextSetBit(0); stripe >= 0; stripe = held.nextSetBit(stripe + 1)) {
+
+            boolean hot = stripe >= STRIPES;
+
+            boolean exclusive = purpose == Purpose.CLOSING || (purpose == Purpose.POSTING) != hot;
+
+            Lock lock = exclusive ? stripes[stripe].writeLock() : stripes[stripe].readLock();
+
+            lock.lock();
+
+            locks[count++] = lock;
+        }
+
+        return new Hold(locks);
+    }
+
+    /**
+     * Locks taken by {@link #forPosting(Collection)} or {@link #forReading(Collection)}, released in the reverse of
+     * the order in which they were taken when closed
+     */
+    public static final class Hold implements AutoCloseable {
+
+        private final Lock[] locks;
+
+        private Hold(Lock[] locks) {
+            this.locks = locks;
+        }
+
+        @Override
+        public void close() {
+
+            for (int i = locks.length - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.List;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * Immutable state of an {@link Account} as last published by a writer: running sums, in minor units of the currency,
+ * of the debit and credit {@link Entry} items, the latest booking date seen so far, the {@link AccountSide} to which the
+ * account belongs by default and a version which counts the states published. A new instance is published through a
+ * single reference for every change, which means that a reader holding a reference will always see totals and a side
+ * that agree with each other, even while other threads are adding entries, and can work out a balance from them
+ * without writing anything.
+ *
+ * @author edwin.njeru
+ */
+final class RunningTotals {
+
+    private final long debits;
+
+    private final long credits;
+
+    // null until the first entry is added
+    private final TimePoint latestBookingDate;
+
+    private final AccountSide accountSide;
+
+    private final long version;
+
+    private RunningTotals(long debits, long credits, TimePoint latestBookingDate, AccountSide accountSide, long version) {
+        this.debits = debits;
+        this.credits = credits;
+        this.latestBookingDate = latestBookingDate;
+        this.accountSide = accountSide;
+        this.version = version;
+    }
+
+    /**
+     * @param accountSide {@link AccountSide} to which the account belongs by default
+     * @return {@link RunningTotals} of an account without entries
+     */
+    static RunningTotals opening(AccountSide accountSide) {
+
+        return new RunningTotals(0, 0, null, accountSide, 0);
+    }
+
+    /**
+     * @param accountSide       {@link AccountSide} to which the account belongs by default
+     * @param debits            Sum of the debits in minor units
+     * @param credits           Sum of the credits in minor units
+     * @param latestBookingDate {@link TimePoint} of the latest booking date among the entries summed up, or null if none
+     * @return {@link RunningTotals} of entries which have been summed up elsewhere
+     */
+    static RunningTotals of(AccountSide accountSide, long debits, long credits, TimePoint latestBookingDate) {
+
+        return new RunningTotals(debits, credits, latestBookingDate, accountSide, 0);
+    }
+
+    /**
+     * @param entry {@link Entry} being added to the account
+     * @return New {@link RunningTotals} including the entry's amount
+     */
+    RunningTotals add(Entry entry) {
+
+        long amount = entry.getAmountMinorUnits();
+
+        TimePoint bookingDate = latestBookingDate == null || entry.getBookingDate().after(latestBookingDate) ? entry.getBookingDate() : latestBookingDate;
+
+        return entry.getAccountSide() == DEBIT ?
+            new RunningTotals(debits + amount, credits, bookingDate, accountSide, version + 1) :
+            new RunningTotals(debits, credits + amount, bookingDate, accountSide, version + 1);
+    }
+
+    /**
+     * @param entries {@link Entry} items being added to the account
+     * @return New {@link RunningTotals} including the amounts of all the entries
+     */
+    RunningTotals addAll(List<? extends Entry> entries) {
+
+        long debitTotal = debits;
+        long creditTotal = credits;
+        TimePoint bookingDate = latestBookingDate;
+
+        for (Entry entry : entries) {
+
+            if (entry.getAccountSide() == DEBIT) {
+                debitTotal += entry.getAmountMinorUnits();
+            } else {
+                creditTotal += entry.getAmountMinorUnits();
+            }
+
+            if (bookingDate == null || entry.getBookingDate().after(bookingDate)) {
+                bookingDate = entry.getBookingDate();
+            }
+        }
+
+        return new RunningTotals(debitTotal, creditTotal, bookingDate, accountSide, version + 1);
+    }
+
+    /**
+     * @param side {@link AccountSide} to which the account belongs by default from now on
+     * @return New {@link RunningTotals} with the same sums
+     */
+    RunningTotals withAccountSide(AccountSide side) {
+
+        return new RunningTotals(debits, credits, latestBookingDate, side, version + 1);
+    }
+
+    /**
+     * @param asAt {@link TimePoint} of the balance enquiry
+     * @return true if every entry summed up here was booked on or before the date given, in which case the totals
+     * are the balance as at that date
+     */
+    boolean covers(TimePoint asAt) {
+
+        return latestBookingDate == null || !asAt.before(latestBookingDate);
+    }
+
+    long getDebits() {
+        return debits;
+    }
+
+    long getCredits() {
+        return credits;
+    }
+
+    AccountSide getAccountSide() {
+        return accountSide;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+        sb.append("debits=").append(debits);
+        sb.append(", credits=").append(credits);
+        sb.append(", latestBookingDate=").append(latestBookingDate);
+        sb.append(", accountSide=").append(accountSide);
+        sb.append(", version=").append(version);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -19,8 +19,7 @@ import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.api.Entry;
 import io.github.ghacupha.keeper.book.balance.AccountBalance;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
-import io.github.ghacupha.keeper.book.base.state.AccountState;
-import io.github.ghacupha.keeper.book.util.ImmutableListCollector;
+import io.github.ghacupha.keeper.book.util.ChunkedAppendLog;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
 import io.github.ghacupha.time.point.DateRange;
@@ -31,9 +30,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Currency;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
@@ -48,25 +50,36 @@ import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
  * Some non-guaranteed care has been taken to make the Implementation as thread-safe as possible. This may not
  * be obviously evident by the usual use of words like "synchronized" et al. In fact synchronization would probably just
  * slow us down. Instead what has been done is that the {@link Collection} of {@link Entry} items, which is the whole
- * concept of this Account pattern, has been implemented using a {@link List} interface implementation that creates a new
- * copy of itself every time time a mutative process is carried out. It's iterator as a result is guaranteed never to throw
- * {@code ConcurrentModificationException} and it does not reflect additions, removals or changes to the list, once they
- * have been created.
+ * concept of this Account pattern, has been implemented using a {@link ChunkedAppendLog}, a {@link List} to which
+ * entries are appended in O(1) without copying what is already there. It's iterator as a result is guaranteed never to
+ * throw {@code ConcurrentModificationException} and it does not reflect additions to the list, once it has been created.
+ * The account also keeps {@link RunningTotals} of debits and credits, updated as each {@link Entry} is added, so that
+ * a balance enquiry as at the latest booking date or later is answered without going through the entries at all.
+ * Enquiries into the past are answered by the {@link AccountAppraisalDelegate} from a {@link BookingDateIndex} of the
+ * entries, which is also kept up to date as each {@link Entry} is added. Recent balances are kept in a small
+ * {@link BalanceCache}, from which an added {@link Entry} evicts only the balances as at its booking date or later.
+ * Closing a period records a {@link Checkpoint} in the {@link AccountAppraisalDelegate} and makes the account refuse
+ * entries booked on or before the closing date.
  */
 public final class SimpleAccount implements Account {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleAccount.class);
 
-    private final AccountAppraisalDelegate appraisalDelegate = new AccountAppraisalDelegate(this);
+    private final BookingDateIndex bookingDateIndex = new BookingDateIndex(this);
+
+    private final AccountAppraisalDelegate appraisalDelegate = new AccountAppraisalDelegate(this, () -> this.entries, bookingDateIndex);
 
     private final Currency currency;
     private final AccountDetails accountDetails;
-    private volatile AccountSide accountSide;
+    private volatile List<Entry> entries = new ChunkedAppendLog<>();
+
+    // totals and side as last published, from which balances are read without writing anything
+    private final AtomicReference<RunningTotals> runningTotals;
 
-    @SuppressWarnings("unused")
-    private AccountState accountState;
+    private final BalanceCache balanceCache = new BalanceCache(BalanceCache.DEFAULT_CAPACITY);
 
-    private volatile List<Entry> entries = new CopyOnWriteArrayList<>();
+    // shared by entries being added, exclusive while a period is being closed
+    private final ReadWriteLock periodLock = new ReentrantReadWriteLock();
 
     /**
      * This constructor will one day allow someone to implement the {@link List} interface with anything,
@@ -81,14 +94,16 @@ public final class SimpleAccount implements Account {
      */
     SimpleAccount(AccountSide accountSide, Currency currency, AccountDetails accountDetails, final List<Entry> entries) {
         this.currency = currency;
-        this.accountSide = accountSide;
+        this.runningTotals = new AtomicReference<>(RunningTotals.opening(accountSide));
         this.accountDetails = accountDetails;
         this.entries = entries;
+
+        entries.forEach(this::index);
     }
 
     public SimpleAccount(final AccountSide accountSide, Currency currency, AccountDetails accountDetails) {
         this.currency = currency;
-        this.accountSide = accountSide;
+        this.runningTotals = new AtomicReference<>(RunningTotals.opening(accountSide));
         this.accountDetails = accountDetails;
     }
 
@@ -104,24 +119,114 @@ public final class SimpleAccount implements Account {
 
         log.debug("Adding entry to account : {}", entry);
 
-        if (entry.getBookingDate().before(accountDetails.getOpeningDate())) {
+        AccountSupport.checkEntry(entry, accountDetails, currency);
 
-            String message = String.format("Opening date : %s . The entry date was %s", this.accountDetails.getOpeningDate(), entry.getBookingDate());
-            throw new UntimelyBookingDateException("The booking date cannot be earlier than the account opening date : " + message);
+        periodLock.readLock().lock();
+        try {
+            AccountSupport.checkNotClosed(entry, appraisalDelegate.getLatestClosingDate());
 
-        } else if (!this.currency.equals(entry.getAmount().getCurrency())) {
+            entries.add(entry); // done
 
-            String message = String.format("Currencies mismatched :Expected getCurrency : %s but found entry denominated in %s", this.currency.toString(), entry.getAmount().getCurrency());
-            throw new MismatchedCurrencyException(message);
+            index(entry);
 
-        } else {
+        } finally {
+            periodLock.readLock().unlock();
+        }
 
-            entries.add(entry); // done
+        log.debug("Entry : {} has been added into account : {}", entry, this);
+    }
+
+    /**
+     * Adds a batch of entries. Every entry is checked before any is appended, the period lock is taken once for the
+     * batch, and the date index, running totals and balance cache are each brought up to date once
+     *
+     * @param entries {@link Entry} items to be added to this
+     */
+    @Override
+    public void addEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        log.debug("Adding {} entries to account : {}", entries.size(), this);
+
+        TimePoint earliest = null;
+
+        for (Entry entry : entries) {
+
+            AccountSupport.checkEntry(entry, accountDetails, currency);
+
+            if (earliest == null || entry.getBookingDate().before(earliest)) {
+                earliest = entry.getBookingDate();
+            }
+        }
+
+        periodLock.readLock().lock();
+        try {
+            TimePoint closingDate = appraisalDelegate.getLatestClosingDate();
+
+            for (Entry entry : entries) {
+                AccountSupport.checkNotClosed(entry, closingDate);
+            }
+
+            this.entries.addAll(entries);
+
+            bookingDateIndex.addAll(entries);
 
-            log.debug("Entry : {} has been added into account : {}", entry, this);
+            runningTotals.updateAndGet(totals -> totals.addAll(entries));
+
+            balanceCache.invalidateFrom(earliest);
+
+        } finally {
+            periodLock.readLock().unlock();
+        }
+
+        log.debug("{} entries have been added into account : {}", entries.size(), this);
+    }
+
+    @Override
+    public void checkEntries(List<? extends Entry> entries) throws MismatchedCurrencyException, UntimelyBookingDateException {
+
+        for (Entry entry : entries) {
+            AccountSupport.checkEntry(entry, accountDetails, currency);
+        }
+
+        periodLock.readLock().lock();
+        try {
+            TimePoint closingDate = appraisalDelegate.getLatestClosingDate();
+
+            for (Entry entry : entries) {
+                AccountSupport.checkNotClosed(entry, closingDate);
+            }
+        } finally {
+            periodLock.readLock().unlock();
         }
     }
 
+    /**
+     * Closes the accounting period ending on the closing date. No entries can be added while the period is
+     * being closed, and no {@link io.github.ghacupha.keeper.book.api.Transaction} can be in the middle of posting to
+     * this, since the period is closed under the account's {@link PostingLocks}
+     *
+     * @param closingDate {@link TimePoint} of the last day of the period being closed
+     * @return {@link AccountBalance} as at the closing date
+     */
+    @Override
+    public AccountBalance closePeriod(TimePoint closingDate) throws UntimelyBookingDateException {
+
+        return AccountSupport.closePeriod(this, periodLock, appraisalDelegate, closingDate);
+    }
+
+    private void index(Entry entry) {
+
+        bookingDateIndex.add(entry);
+
+        runningTotals.updateAndGet(totals -> totals.add(entry));
+
+        balanceCache.invalidateFrom(entry.getBookingDate());
+    }
+
     /**
      * Returns the balance of the Account
      *
@@ -133,13 +238,88 @@ public final class SimpleAccount implements Account {
 
         log.debug("Account balance enquiry raised as at {}, for account : {}", asAt, this);
 
-        AccountBalance balance = appraisalDelegate.balance(new DateRange(accountDetails.getOpeningDate(), asAt));
+        RunningTotals totals = runningTotals.get();
+
+        // the latest balance comes straight from the published totals, without taking the cache's lock
+        AccountBalance balance = totals.covers(asAt) ?
+            appraisalDelegate.balance(totals.getDebits(), totals.getCredits(), totals.getAccountSide()) :
+            balanceCache.get(asAt, this::appraise);
 
         log.debug("Returning accounting balance for {} as at : {} as : {}", this, asAt, balance);
 
         return balance;
     }
 
+    /**
+     * @param asAt {@link TimePoint} at which is Effective
+     * @return Debits less credits as at the date in minor units, straight from the running totals or the
+     * {@link BookingDateIndex}
+     */
+    @Override
+    public long balanceMinorUnits(TimePoint asAt) {
+
+        RunningTotals totals = runningTotals.get();
+
+        if (totals.covers(asAt)) {
+
+            return totals.getDebits() - totals.getCredits();
+        }
+
+        BookingDateIndex.Sums sums = bookingDateIndex.sumsAsAt(asAt);
+
+        return sums.getDebits() - sums.getCredits();
+    }
+
+    /**
+     * Balances as at each of the dates given, all taken from the same state of the {@link BookingDateIndex}
+     *
+     * @param asAt {@link TimePoint} dates as at which balances are wanted, in any order
+     * @return {@link AccountBalance} as at each date, in the order the dates were given
+     */
+    @Override
+    public List<AccountBalance> balances(List<TimePoint> asAt) {
+
+        log.debug("Account balances enquiry raised as at {} dates, for account : {}", asAt.size(), this);
+
+        return appraisalDelegate.balances(asAt);
+    }
+
+    private AccountBalance appraise(TimePoint asAt) {
+
+        AccountBalance balance;
+
+        RunningTotals totals = runningTotals.get();
+
+        if (totals.covers(asAt)) {
+
+            balance = appraisalDelegate.balance(totals.getDebits(), totals.getCredits(), totals.getAccountSide());
+
+        } else {
+
+            balance = appraisalDelegate.balance(asAt);
+        }
+
+        assert balance.equals(appraisalDelegate.balance(new DateRange(accountDetails.getOpeningDate(), asAt))) : "Balance " + balance + " disagrees with the entries in " + this;
+
+        return balance;
+    }
+
+    /**
+     * @return Number of balance enquiries answered from the cache of recent balances
+     */
+    public long getBalanceCacheHits() {
+
+        return balanceCache.getHits();
+    }
+
+    /**
+     * @return Number of balance enquiries which had to be appraised
+     */
+    public long getBalanceCacheMisses() {
+
+        return balanceCache.getMisses();
+    }
+
     /**
      * Similar to the balance query for a given date except the date is provided through a
      * simple {@code VarArgs} int argument
@@ -169,14 +349,21 @@ public final class SimpleAccount implements Account {
         return currency;
     }
 
+    /**
+     * @return Read-only view of the {@link Entry} items, which copies nothing. Iterating the view goes over a snapshot
+     * of the entries as they were when the iteration started, unaffected by entries added since
+     */
     @Override
     public List<Entry> getEntries() {
 
-        return new CopyOnWriteArrayList<>(
-                entries
-                        .parallelStream()
-                        .collect(
-                                ImmutableListCollector.toImmutableList()));
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return {@link TimePoint} closing date of the latest period closed, or null if none has been closed
+     */
+    TimePoint getLatestClosingDate() {
+        return appraisalDelegate.getLatestClosingDate();
     }
 
     @Override
@@ -202,7 +389,7 @@ public final class SimpleAccount implements Account {
     public AccountSide getAccountSide() {
 
         // The original accountSide remains. No side effects
-        return this.accountSide == DEBIT ? DEBIT : CREDIT;
+        return runningTotals.get().getAccountSide() == DEBIT ? DEBIT : CREDIT;
     }
 
     @Override
@@ -214,6 +401,9 @@ public final class SimpleAccount implements Account {
     @Override
     public void setAccountSide(final AccountSide accountSide) {
 
-        this.accountSide = accountSide;
+        runningTotals.updateAndGet(totals -> totals.withAccountSide(accountSide));
+
+        // balances of nought which were cached on the old side
+        balanceCache.invalidateFrom(accountDetails.getOpeningDate());
     }
 }
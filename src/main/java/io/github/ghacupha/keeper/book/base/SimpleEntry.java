@@ -19,6 +19,7 @@ import io.github.ghacupha.cash.Cash;
 import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.api.Entry;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
 import io.github.ghacupha.time.point.TimePoint;
@@ -53,6 +54,9 @@ public final class SimpleEntry implements Entry {
     // how much the entry will contain, money wise
     private final Cash amount;
 
+    // the same amount in minor units of the currency
+    private final long amountMinorUnits;
+
     // AccountSide
     private final AccountSide accountSide;
 
@@ -66,10 +70,18 @@ public final class SimpleEntry implements Entry {
         this.forAccount = forAccount;
         this.accountSide = accountSide;
         this.amount = amount;
+        this.amountMinorUnits = MinorUnits.of(amount);
         this.bookingDate = bookingDate;
         this.entryDetails = entryDetails;
     }
 
+    /**
+     * @return {@link Account} into which this is posted
+     */
+    Account getForAccount() {
+        return forAccount;
+    }
+
     @Override
     public EntryDetails getEntryDetails() {
         return entryDetails;
@@ -95,6 +107,11 @@ public final class SimpleEntry implements Entry {
         return amount;
     }
 
+    @Override
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
     @Override
     public void post() {
         try {
@@ -20,23 +20,34 @@ import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.api.Entry;
 import io.github.ghacupha.keeper.book.api.Transaction;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.util.EpochDays;
 import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
+import io.github.ghacupha.keeper.book.util.IndeterminatePostingException;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
 import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
 import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
 import io.github.ghacupha.time.point.TimePoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Currency;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CopyOnWriteArraySet;
 
-import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
 
 /**
@@ -45,6 +56,8 @@ import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
  * {@link List} whose implementation involved a data structure that copies itself for every mutative procedure that
  * is done, in this case involving addition of {@link Entry} items. There is a boolean that says whether or not the
  * {@link Transaction} has been posted, which is dangerously non final, but is volatile nevertheless.
+ * The debits and credits are totalled as the entries are added, so that checking whether the transaction balances
+ * costs the same however many entries it has.
  *
  * @author edwin.njeru
  */
@@ -59,13 +72,39 @@ public final class SimpleTransaction implements Transaction {
     private volatile boolean wasPosted;
     private final Currency currency;
 
-    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    private final List<SimpleEntry> entries = new CopyOnWriteArrayList<>();
+
+    // totals of the entries in minor units, kept together with the entries under the lock of this
+    private long debits;
+    private long credits;
+
+    // null unless postings are journaled before they are applied
+    private final PostingJournal journal;
+
+    private final Set<Entry> entryView = new AbstractSet<Entry>() {
+
+        @Override
+        public Iterator<Entry> iterator() {
+            return Collections.<Entry>unmodifiableList(entries).iterator();
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+    };
 
     SimpleTransaction(String label, TimePoint date, Currency currency) {
 
+        this(label, date, currency, null);
+    }
+
+    SimpleTransaction(String label, TimePoint date, Currency currency, PostingJournal journal) {
+
         this.label = label;
         this.date = date;
         this.currency = currency;
+        this.journal = journal;
 
         log.info("SimpleTransaction created {}", this);
     }
@@ -74,24 +113,13 @@ public final class SimpleTransaction implements Transaction {
         return new SimpleTransaction(label, date, currency);
     }
 
-    private static Double mapCashToDouble(Entry entry) {
-        return entry.getAmount().getNumber().doubleValue();
-    }
-
-    private static boolean predicateCredits(Entry entry) {
-        boolean credit;
-        log.trace("Checking if entry {} is credit ", entry.getEntryDetails());
-        credit = entry.getAccountSide() == CREDIT;
-        log.trace("Entry : {} is credit {}", entry.getEntryDetails(), credit);
-        return credit;
-    }
-
-    private static boolean predicateDebits(Entry entry) {
-        boolean debit;
-        log.trace("Checking if entry {} is debit ", entry.getEntryDetails());
-        debit = entry.getAccountSide() == DEBIT;
-        log.trace("Entry : {} is credit {}", entry.getEntryDetails(), debit);
-        return debit;
+    /**
+     * @param journal {@link PostingJournal} to which the transaction is appended when posted, before any of its
+     *                entries is added to an account
+     * @return {@link Transaction} which is journaled when posted
+     */
+    public static Transaction getTransaction(String label, TimePoint date, Currency currency, PostingJournal journal){
+        return new SimpleTransaction(label, date, currency, journal);
     }
 
     /**
@@ -112,53 +140,277 @@ public final class SimpleTransaction implements Transaction {
             throw new MismatchedCurrencyException("Cannot add entry whose getCurrency differs to that of the transaction");
         } else {
             log.debug("Adding entry  : {} into transaction : {}", details, this);
-            Entry tempEntry = new SimpleEntry(accountSide, account, amount, date, details);
-            entries.add(tempEntry);
+            SimpleEntry tempEntry = new SimpleEntry(accountSide, account, amount, date, details);
+            synchronized (this) {
+                entries.add(tempEntry);
+
+                if (accountSide == DEBIT) {
+                    debits += tempEntry.getAmountMinorUnits();
+                } else {
+                    credits += tempEntry.getAmountMinorUnits();
+                }
+            }
             log.debug("Entry {} has been added to {}", tempEntry, this);
         }
     }
 
     /**
-     * Posts the transactions into respective {@link Account} items
+     * Posts the transaction into respective {@link Account} items, all or nothing. The posting locks of the accounts
+     * are taken in their global order, every account is asked whether it would take its entries, the transaction is
+     * written to the {@link PostingJournal} if there is one, and only then are the entries added. Readers holding
+     * the accounts' read locks therefore see either all of the legs or none of them.
+     * The locks are let go of before waiting for the record to be as durable as the journal's {@link
+     * io.github.ghacupha.keeper.book.journal.SyncPolicy} says, so that other transactions on the same accounts can
+     * be written within the same group commit rather than each waiting out a sync behind the one before
      *
      * @throws UnableToPostException {@link UnableToPostException} thrown when the transaction is not balanced
      *                               That is if the items posted on the debit are more than those posted on the credit or vice versa.
+     *                               Also thrown if any of the accounts would refuse its entries, or if the
+     *                               transaction could not be written to the journal, in which case none of the
+     *                               entries is posted. An {@link IndeterminatePostingException} is thrown instead if
+     *                               the entries were posted but the journal could not be forced out
      */
     @Override
+    @SuppressWarnings("try")
     public void post() throws UnableToPostException {
 
-        if (balanced() != 0) {
+        checkBalanced();
+
+        Map<Account, List<Entry>> legs = legsByAccount(Collections.singletonList(this));
+
+        Map<PostingJournal, Long> written;
+
+        try (PostingLocks.Hold ignored = PostingLocks.forPosting(legs.keySet())) {
+
+            checkLegs(legs);
+
+            written = journal(Collections.singletonList(this));
+
+            log.debug("Posting : {} entries ...", entries.size());
+
+            applyLegs(legs);
+        }
+
+        wasPosted = true;
+
+        awaitDurable(written);
+    }
+
+    /**
+     * Posts a batch of transactions, such as those of a bank statement being imported, all or nothing. Every
+     * transaction is checked to be balanced, the posting locks of every account in the batch are taken, and every
+     * account is asked whether it would take its entries before any of them is posted. The records of the batch then
+     * go into each {@link PostingJournal} in one write, waited on to be durable once the locks are let go of, and the
+     * entries of the whole batch are added to their accounts with {@link Account#addEntries(List)} one group per
+     * account, so that each account's locks are taken and its totals and indices brought up to date once per batch
+     * rather than once per entry.
+     * {@link Transaction} implementations other than this one are posted one at a time, after the rest of the batch
+     *
+     * @param transactions {@link Transaction} items to be posted
+     * @throws UnableToPostException if any of the transactions is not balanced, or any of the accounts would refuse
+     *                               its entries, in which case none of them is posted, or if the batch could not be
+     *                               written to a journal. An {@link IndeterminatePostingException} is thrown instead
+     *                               if the batch was posted but a journal could not be forced out
+     */
+    @SuppressWarnings("try")
+    public static void postAll(Collection<? extends Transaction> transactions) throws UnableToPostException, ImmutableEntryException {
+
+        List<SimpleTransaction> batch = new ArrayList<>(transactions.size());
+        List<Transaction> others = new ArrayList<>();
+
+        for (Transaction transaction : transactions) {
+
+            if (transaction instanceof SimpleTransaction) {
+
+                SimpleTransaction simpleTransaction = (SimpleTransaction) transaction;
 
-            if (balanced() > 0) {
+                simpleTransaction.checkBalanced();
 
-                throw new UnableToPostException(String.format("The debits are more than credits by : %s", balanced()));
+                batch.add(simpleTransaction);
 
             } else {
 
-                throw new UnableToPostException(String.format("The credits are more than debits by : %s", balanced() * -1));
+                others.add(transaction);
             }
+        }
 
-        } else {
+        Map<Account, List<Entry>> groups = legsByAccount(batch);
 
-            log.debug("Posting : {} entries ...", entries.size());
+        Map<PostingJournal, Long> written;
+
+        try (PostingLocks.Hold ignored = PostingLocks.forPosting(groups.keySet())) {
 
-            entries.parallelStream().forEach(Entry::post);
+            checkLegs(groups);
 
-            wasPosted = true;
+            written = journal(batch);
+
+            log.debug("Posting : {} transactions into {} accounts ...", batch.size(), groups.size());
+
+            applyLegs(groups);
+        }
+
+        for (SimpleTransaction transaction : batch) {
+            transaction.wasPosted = true;
+        }
+
+        awaitDurable(written);
+
+        for (Transaction transaction : others) {
+            transaction.post();
         }
     }
 
-    private double balanced() {
+    static Map<Account, List<Entry>> legsByAccount(List<SimpleTransaction> transactions) {
+
+        Map<Account, List<Entry>> legs = new IdentityHashMap<>();
+
+        for (SimpleTransaction transaction : transactions) {
+            for (SimpleEntry entry : transaction.entries) {
+                legs.computeIfAbsent(entry.getForAccount(), account -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        return legs;
+    }
 
-        double debits = entries.parallelStream().filter(SimpleTransaction::predicateDebits).map(SimpleTransaction::mapCashToDouble).reduce(0.00, (acc, val) -> acc + val);
+    static void checkLegs(Map<Account, List<Entry>> legs) throws UnableToPostException {
 
-        return debits - entries.parallelStream().filter(SimpleTransaction::predicateCredits).map(SimpleTransaction::mapCashToDouble).reduce(0.00, (acc, val) -> acc + val);
+        for (Map.Entry<Account, List<Entry>> leg : legs.entrySet()) {
+            try {
+                leg.getKey().checkEntries(leg.getValue());
+            } catch (UntimelyBookingDateException | MismatchedCurrencyException e) {
+                throw new UnableToPostException("The account " + leg.getKey() + " would not take its entries : " + e.getMessage(), e);
+            }
+        }
     }
 
+    // the accounts have been checked under the posting locks, so none of them should refuse its entries here
+    static void applyLegs(Map<Account, List<Entry>> legs) throws UnableToPostException {
+
+        for (Map.Entry<Account, List<Entry>> leg : legs.entrySet()) {
+            try {
+                leg.getKey().addEntries(leg.getValue());
+            } catch (UntimelyBookingDateException | MismatchedCurrencyException e) {
+                throw new UnableToPostException("The account " + leg.getKey() + " refused entries it had already accepted", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the records of the transactions to their journals, without waiting for them to be durable
+     *
+     * @return Sequence number of the last record written to each journal
+     */
+    static Map<PostingJournal, Long> journal(List<SimpleTransaction> batch) throws UnableToPostException {
+
+        Map<PostingJournal, List<byte[]>> records = new IdentityHashMap<>();
+
+        Map<PostingJournal, Long> written = new IdentityHashMap<>();
+
+        try {
+            for (SimpleTransaction transaction : batch) {
+                if (transaction.journal != null) {
+                    records.computeIfAbsent(transaction.journal, journal -> new ArrayList<>()).add(transaction.journalRecord());
+                }
+            }
+
+            for (Map.Entry<PostingJournal, List<byte[]>> journalRecords : records.entrySet()) {
+                written.put(journalRecords.getKey(), journalRecords.getKey().writeAll(journalRecords.getValue()));
+            }
+        } catch (IOException e) {
+            throw new UnableToPostException("A batch of " + batch.size() + " transactions could not be journaled", e);
+        }
+
+        return written;
+    }
+
+    /**
+     * Waits for the records written by {@link #journal(List)} to be as durable as their journals' policies say. By
+     * then the entries are in their accounts, so a journal which could not be forced out leaves the postings neither
+     * refused nor known to be durable
+     *
+     * @param written Sequence number of the last record written to each journal
+     * @throws IndeterminatePostingException if a journal could not be forced out
+     */
+    static void awaitDurable(Map<PostingJournal, Long> written) throws IndeterminatePostingException {
+
+        try {
+            for (Map.Entry<PostingJournal, Long> journal : written.entrySet()) {
+                journal.getKey().awaitDurable(journal.getValue());
+            }
+        } catch (IOException e) {
+            throw new IndeterminatePostingException("The transactions were posted but the journal could not be forced out", e);
+        }
+    }
+
+    /**
+     * Marks the transaction as posted, once all of its entries have been added by someone other than {@link #post()}
+     */
+    void posted() {
+        wasPosted = true;
+    }
+
+    void checkBalanced() throws UnableToPostException {
+
+        long imbalance = imbalance();
+
+        if (imbalance > 0) {
+
+            throw new UnableToPostException(String.format("The debits are more than credits by : %s", MinorUnits.toCash(imbalance, currency)));
+
+        } else if (imbalance < 0) {
+
+            throw new UnableToPostException(String.format("The credits are more than debits by : %s", MinorUnits.toCash(-imbalance, currency)));
+        }
+    }
+
+    /**
+     * The record of this transaction in the {@link PostingJournal}, written with a {@link DataOutputStream} as the
+     * label, the epoch day of the date, the currency code and the number of entries, followed for each entry by
+     * whether it is a debit, its amount in minor units, the number of its account and its narration
+     *
+     * @return Bytes of the record
+     */
+    private byte[] journalRecord() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 48 * entries.size());
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+
+            out.writeUTF(label);
+            out.writeInt(EpochDays.of(date));
+            out.writeUTF(currency.getCurrencyCode());
+            out.writeInt(entries.size());
+
+            for (SimpleEntry entry : entries) {
+
+                out.writeBoolean(entry.getAccountSide() == DEBIT);
+                out.writeLong(entry.getAmountMinorUnits());
+                out.writeUTF(entry.getForAccount().getAccountDetails().getNumber());
+                out.writeUTF(Objects.toString(entry.getEntryDetails().getNarration(), ""));
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return Debits less credits in exact minor units of the currency, from totals kept as the entries are added
+     */
+    @Override
+    public synchronized long imbalance() {
+
+        return debits - credits;
+    }
+
+    /**
+     * @return Read-only {@link Set} view of the {@link Entry} items, which copies nothing. Every entry added is a new
+     * object, so the list in which they are kept holds no duplicates and can stand for the set as it is
+     */
     @Override
     public Set<Entry> getEntries() {
 
-        return Collections.unmodifiableSet(new CopyOnWriteArraySet<>(entries));
+        return entryView;
     }
 
     @Override
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.MinorUnits;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.util.Currency;
+import java.util.Objects;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+
+/**
+ * {@link Entry} view of a position in an {@link EntryStore}. The view holds nothing but the store and the position,
+ * the {@link Cash} amount and {@link TimePoint} booking date are made from the stored primitives each time they are
+ * asked for. An entry that is in a store has already been posted, so it cannot be posted again.
+ *
+ * @author edwin.njeru
+ */
+final class StoredEntry implements Entry {
+
+    private final EntryStore store;
+
+    private final int position;
+
+    StoredEntry(EntryStore store, int position) {
+        this.store = store;
+        this.position = position;
+    }
+
+    @Override
+    public EntryDetails getEntryDetails() {
+        return store.entryDetails(position);
+    }
+
+    @Override
+    public Currency getCurrency() {
+        return store.getCurrency();
+    }
+
+    @Override
+    public AccountSide getAccountSide() {
+        return store.isDebit(position) ? DEBIT : CREDIT;
+    }
+
+    @Override
+    public TimePoint getBookingDate() {
+        return EpochDays.toTimePoint(store.bookingDay(position));
+    }
+
+    @Override
+    public Cash getAmount() {
+        return MinorUnits.toCash(store.amountMinorUnits(position), store.getCurrency());
+    }
+
+    @Override
+    public long getAmountMinorUnits() {
+        return store.amountMinorUnits(position);
+    }
+
+    @Override
+    public void post() {
+        throw new UnsupportedOperationException("The entry " + this + " has already been posted");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StoredEntry that = (StoredEntry) o;
+        return position == that.position && store == that.store;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(store), position);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getEntryDetails());
+    }
+}
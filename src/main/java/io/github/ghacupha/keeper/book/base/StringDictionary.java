@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.ChunkedAppendLog;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Ledger-wide dictionary of strings such as narrations, which repeat across thousands of {@link EntryDetails}. Each
+ * distinct string is kept once and given an integer code, which {@link EntryDetails} keep in place of the narration,
+ * so that entries with the same narration can be picked out by comparing codes, see {@link #narrationIs(String)}.
+ * String attribute values are kept as the dictionary's own copy of the string.
+ * The dictionary is off unless turned on with {@link #setDefault(StringDictionary)} or the system property
+ * {@value #ENABLED_PROPERTY}, and only details made while it is on are encoded. Codes are never given back, so the
+ * dictionary suits strings that recur rather than ones that are unique to each entry.
+ *
+ * @author edwin.njeru
+ */
+public final class StringDictionary {
+
+    public static final String ENABLED_PROPERTY = "io.github.ghacupha.keeper.book.stringDictionary";
+
+    public static final int NO_CODE = -1;
+
+    private static volatile StringDictionary defaultDictionary = Boolean.getBoolean(ENABLED_PROPERTY) ? new StringDictionary() : null;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    // strings by code
+    private final List<String> strings = new ChunkedAppendLog<>();
+
+    /**
+     * @return {@link StringDictionary} in use by the ledger, or null if there is none
+     */
+    public static StringDictionary getDefault() {
+
+        return defaultDictionary;
+    }
+
+    /**
+     * @param dictionary {@link StringDictionary} to be used by the ledger from now on, or null to stop encoding
+     */
+    public static void setDefault(StringDictionary dictionary) {
+
+        defaultDictionary = dictionary;
+    }
+
+    /**
+     * @param string String to be encoded
+     * @return Code of the string, given to it now if it has none yet
+     */
+    public int encode(String string) {
+
+        Integer code = codes.get(string);
+
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+
+            code = codes.get(string);
+
+            if (code == null) {
+
+                code = strings.size();
+
+                strings.add(string);
+                codes.put(string, code);
+            }
+
+            return code;
+        }
+    }
+
+    /**
+     * @param code Code given by {@link #encode(String)}
+     * @return The string with the code
+     */
+    public String decode(int code) {
+
+        return strings.get(code);
+    }
+
+    /**
+     * @param string String whose code is wanted
+     * @return Code of the string or {@link #NO_CODE} if it has never been encoded
+     */
+    public int codeOf(String string) {
+
+        Integer code = codes.get(string);
+
+        return code == null ? NO_CODE : code;
+    }
+
+    /**
+     * @param string String to be kept
+     * @return The dictionary's copy of the string, which is kept once however many times it is used
+     */
+    public String intern(String string) {
+
+        return decode(encode(string));
+    }
+
+    /**
+     * @return Number of distinct strings in the dictionary
+     */
+    public int size() {
+
+        return strings.size();
+    }
+
+    /**
+     * Filter for entries with the narration given. Entries whose details were encoded in this dictionary are compared
+     * by their codes, any others by their narrations. The filter can be made before the narration is first encoded
+     * and used again afterwards: the code is looked up for as long as the narration has none, and kept once it has,
+     * since codes are never given back
+     *
+     * @param narration Narration of the entries wanted
+     * @return {@link Predicate} which is true of entries with the narration
+     */
+    public Predicate<Entry> narrationIs(String narration) {
+
+        return new Predicate<Entry>() {
+
+            private volatile int code = codeOf(narration);
+
+            @Override
+            public boolean test(Entry entry) {
+
+                EntryDetails details = entry.getEntryDetails();
+
+                if (details.isEncodedIn(StringDictionary.this)) {
+
+                    int narrationCode = code;
+
+                    if (narrationCode == NO_CODE) {
+                        narrationCode = codeOf(narration);
+                        code = narrationCode;
+                    }
+
+                    return narrationCode != NO_CODE && details.getNarrationCode() == narrationCode;
+                }
+
+                return narration.equals(details.getNarration());
+            }
+        };
+    }
+}
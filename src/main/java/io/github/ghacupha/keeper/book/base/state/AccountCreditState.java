@@ -20,6 +20,7 @@ import io.github.ghacupha.keeper.book.api.Account;
 import io.github.ghacupha.keeper.book.balance.AccountBalance;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
 
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
 import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
 
 /**
@@ -36,7 +37,8 @@ public class AccountCreditState implements AccountState {
     }
 
     /**
-     * Get AccountBalance given the sum of debits and sum of credits
+     * Get AccountBalance given the sum of debits and sum of credits. The balance is on the side of the larger sum,
+     * and on the credit side if they are equal. Nothing is written, so any number of threads may ask at a time
      *
      * @param debits Amount of {@link Cash} debits in the account
      * @param credits Amount of {@link Cash} credits in the account
@@ -45,22 +47,19 @@ public class AccountCreditState implements AccountState {
     @Override
     public AccountBalance getAccountBalance(final Cash debits, final Cash credits) {
 
-        if(credits.isMoreThan(debits)){
-            return new AccountBalance(credits.minus(debits).abs(),account.getAccountSide());
+        if(debits.isMoreThan(credits)){
+            return new AccountBalance(credits.minus(debits).abs(),DEBIT);
         }
 
-        // The journal side of the account changes to DEBIT
-        account.setAccountSide(DEBIT);
-
-        return new AccountBalance(credits.minus(debits).abs(),DEBIT);
+        return new AccountBalance(credits.minus(debits).abs(),CREDIT);
     }
 
     /**
-     * @return {@code AccountSide} of the Account
+     * @return {@code AccountSide} of an Account in this state
      */
     @Override
     public AccountSide getAccountSide() {
 
-        return account.getAccountSide();
+        return CREDIT;
     }
 }
@@ -21,6 +21,7 @@ import io.github.ghacupha.keeper.book.balance.AccountBalance;
 import io.github.ghacupha.keeper.book.balance.AccountSide;
 
 import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
 
 /**
  * Represents the Account state when it is DEBIT state
@@ -37,7 +38,8 @@ public class AccountDebitState implements AccountState {
     }
 
     /**
-     * Get AccountBalance given the sum of debits and sum of credits
+     * Get AccountBalance given the sum of debits and sum of credits. The balance is on the side of the larger sum,
+     * and on the debit side if they are equal. Nothing is written, so any number of threads may ask at a time
      *
      * @param debits Amount of {@link Cash} debits in the account
      * @param credits Amount of {@link Cash} credits in the account
@@ -46,18 +48,16 @@ public class AccountDebitState implements AccountState {
     @Override
     public AccountBalance getAccountBalance(Cash debits, Cash credits) {
 
-        if(debits.isMoreThan(credits)){
-            return new AccountBalance(debits.minus(credits).abs(),account.getAccountSide());
+        if(credits.isMoreThan(debits)){
+            return new AccountBalance(credits.minus(debits).abs(),CREDIT);
         }
 
-        account.setAccountSide(CREDIT);
-
-        return new AccountBalance(credits.minus(debits).abs(),CREDIT);
+        return new AccountBalance(debits.minus(credits).abs(),DEBIT);
     }
 
     @Override
     public AccountSide getAccountSide() {
-        return account.getAccountSide();
+        return DEBIT;
     }
 
     @Override
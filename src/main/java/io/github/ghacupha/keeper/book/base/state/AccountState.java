@@ -22,7 +22,8 @@ import io.github.ghacupha.keeper.book.balance.AccountSide;
 /**
  * The Account could either be in {@link AccountSide#CREDIT} or {@code AccountSide#DEBT}
  * This interface maintains the methods common to all these states to allow
- * reuse
+ * reuse. The state of an account is its default side, and decides no more than on which side a balance of nought
+ * falls; a state never changes the account, so balances can be read without writing anything
  * 
  * @author edwin.njeru
  */
@@ -38,7 +39,7 @@ public interface AccountState {
 
     /**
      *
-     * @return {@code AccountSide} of the Account
+     * @return {@code AccountSide} of an Account in this state
      */
     AccountSide getAccountSide();
 }
@@ -0,0 +1,525 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only write-ahead journal of postings kept in a local file. Each record is framed as its length (int), a CRC32
+ * of its payload (int) and the payload, so that a record torn by a crash is recognised when the journal is read back;
+ * the journal ends at the last whole record, and opening it cuts anything after that off.
+ * When an append returns the record is durable to the extent the {@link SyncPolicy} promises. Under group commit the
+ * first thread to wait on a record not yet durable leads: it forces out everything written so far, while those who
+ * come to wait meanwhile follow, and whoever among them is still not covered once the force is done leads the next
+ * one. There is no timer, so a lone poster pays for one sync and no more, and however many threads write while a sync
+ * is under way share the next one.
+ * Writing a record and waiting for it to be durable can also be done apart, with {@link #write(byte[])} and
+ * {@link #awaitDurable(long)}, so that a poster can let go of whatever it holds, such as the locks of its accounts,
+ * before waiting on the sync, and others can write their records in the meantime.
+ * A record which could not be written whole is cut off again, and the journal goes on taking records. A journal which
+ * could not be forced out, or could not cut off a torn record, has failed for good: it takes no more records, and
+ * whoever waits on a record written before the failure is told it could not be made durable, although the record is
+ * in the file and may well be read back when the journal is next opened.
+ *
+ * @author edwin.njeru
+ */
+public final class PostingJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingJournal.class);
+
+    static final int HEADER_BYTES = 8;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final SyncPolicy syncPolicy;
+
+    // locks rather than monitors, so that virtual threads waiting on the journal do not pin their carriers
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock durabilityLock = new ReentrantLock();
+    private final Condition forced = durabilityLock.newCondition();
+
+    // guarded by the append lock
+    private long appended;
+    private boolean closed;
+
+    // guarded by the durability lock
+    private long durable;
+    private boolean forcing;
+
+    // set under the durability lock once the journal has failed, after which it takes no more records
+    private volatile IOException failure;
+
+    private PostingJournal(Path file, FileChannel channel, SyncPolicy syncPolicy, long appended) {
+        this.file = file;
+        this.channel = channel;
+        this.syncPolicy = syncPolicy;
+        this.appended = appended;
+        this.durable = appended;
+    }
+
+    /**
+     * Opens the journal for appending after the records already in it, creating the file if need be
+     *
+     * @param file       {@link Path} of the journal file
+     * @param syncPolicy {@link SyncPolicy} of the appends
+     * @return {@link PostingJournal} open for appending
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static PostingJournal open(Path file, SyncPolicy syncPolicy) throws IOException {
+
+        return open(file, syncPolicy, FileChannel.open(file, CREATE, READ, WRITE));
+    }
+
+    static PostingJournal open(Path file, SyncPolicy syncPolicy, FileChannel channel) throws IOException {
+
+        try {
+            long[] records = new long[1];
+
+            long end = read(channel, payload -> records[0]++);
+
+            if (end < channel.size()) {
+
+                log.warn("Cutting off {} bytes of a torn record at the end of the journal {}", channel.size() - end, file);
+
+                channel.truncate(end);
+            }
+
+            channel.position(end);
+
+            log.debug("Opened the journal {} with {} records, syncing {}", file, records[0], syncPolicy);
+
+            return new PostingJournal(file, channel, syncPolicy, records[0]);
+
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads back each whole record in the journal, in the order they were appended
+     *
+     * @param file     {@link Path} of the journal file
+     * @param consumer {@link Consumer} of the payload of each record
+     * @return Number of records read
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+
+        return replay(file, 0, consumer);
+    }
+
+    /**
+     * Reads back the whole records in the journal after the first few, such as those already taken into a snapshot.
+     * The records skipped are stepped over by their lengths without being read
+     *
+     * @param file     {@link Path} of the journal file
+     * @param skip     Number of records at the start of the journal to step over
+     * @param consumer {@link Consumer} of the payload of each record after those
+     * @return Number of records read
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(Path file, long skip, Consumer<ByteBuffer> consumer) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+
+            long[] records = new long[1];
+
+            read(channel, skip, payload -> {
+                records[0]++;
+                consumer.accept(payload);
+            });
+
+            return records[0];
+        }
+    }
+
+    private static long read(FileChannel channel, Consumer<ByteBuffer> consumer) throws IOException {
+
+        return read(channel, 0, consumer);
+    }
+
+    /*
+     * Goes through the whole records from the start of the channel, returning the position after the last. The
+     * records skipped are only checked for being whole, their payloads are neither read nor checked against the CRC
+     */
+    private static long read(FileChannel channel, long skip, Consumer<ByteBuffer> consumer) throws IOException {
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        CRC32 crc = new CRC32();
+
+        long position = 0;
+        long size = channel.size();
+
+        while (position + HEADER_BYTES <= size) {
+
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+
+            int length = header.getInt();
+            int checksum = header.getInt();
+
+            if (length < 0 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+
+            if (skip > 0) {
+                skip--;
+                position += HEADER_BYTES + length;
+                continue;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, position + HEADER_BYTES);
+            payload.flip();
+
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            consumer.accept(payload.asReadOnlyBuffer());
+
+            position += HEADER_BYTES + length;
+        }
+
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+
+        while (buffer.hasRemaining()) {
+
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the journal at " + position);
+            }
+        }
+    }
+
+    /**
+     * Appends a record, returning once it is as durable as the {@link SyncPolicy} says
+     *
+     * @param payload Bytes of the record
+     * @return Sequence number of the record in the journal, starting at one
+     * @throws IOException if the record could not be written or forced out
+     */
+    public long append(byte[] payload) throws IOException {
+
+        long sequence = write(payload);
+
+        awaitDurable(sequence);
+
+        return sequence;
+    }
+
+    /**
+     * Appends a batch of records one after the other, returning once all of them are as durable as the
+     * {@link SyncPolicy} says. The batch is written in one go and forced out at most once
+     *
+     * @param payloads Bytes of each record
+     * @return Sequence number of the last record of the batch
+     * @throws IOException if the records could not be written or forced out
+     */
+    public long appendAll(List<byte[]> payloads) throws IOException {
+
+        long sequence = writeAll(payloads);
+
+        awaitDurable(sequence);
+
+        return sequence;
+    }
+
+    /**
+     * Writes a record after those already in the journal without waiting for it to be forced out, which is left to
+     * {@link #awaitDurable(long)}
+     *
+     * @param payload Bytes of the record
+     * @return Sequence number of the record in the journal, starting at one
+     * @throws IOException if the record could not be written
+     */
+    public long write(byte[] payload) throws IOException {
+
+        ByteBuffer frame = frame(payload);
+
+        appendLock.lock();
+        try {
+            writeFully(frame);
+
+            return ++appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a batch of records one after the other in one go, without waiting for them to be forced out
+     *
+     * @param payloads Bytes of each record
+     * @return Sequence number of the last record of the batch
+     * @throws IOException if the records could not be written
+     */
+    public long writeAll(List<byte[]> payloads) throws IOException {
+
+        int length = 0;
+
+        for (byte[] payload : payloads) {
+            length += HEADER_BYTES + payload.length;
+        }
+
+        ByteBuffer frames = ByteBuffer.allocate(length);
+
+        for (byte[] payload : payloads) {
+            frames.put(frame(payload));
+        }
+
+        frames.flip();
+
+        appendLock.lock();
+        try {
+            writeFully(frames);
+
+            appended += payloads.size();
+
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /*
+     * Writes the frames after the last whole record, cutting off whatever part of them was written should the write
+     * fail, so that no record is ever written after a torn one. Called holding the append lock
+     */
+    private void writeFully(ByteBuffer frames) throws IOException {
+
+        if (closed) {
+            throw new IOException("The journal " + file + " has been closed");
+        }
+
+        if (failure != null) {
+            throw new IOException("The journal " + file + " has failed and takes no more records", failure);
+        }
+
+        long position = channel.position();
+
+        try {
+            while (frames.hasRemaining()) {
+                channel.write(frames);
+            }
+        } catch (IOException e) {
+
+            try {
+                channel.truncate(position);
+                channel.position(position);
+            } catch (IOException cutOff) {
+                e.addSuppressed(cutOff);
+                fail(e);
+            }
+
+            throw e;
+        }
+    }
+
+    private void fail(IOException e) {
+
+        durabilityLock.lock();
+        try {
+            if (failure == null) {
+                failure = e;
+            }
+            forced.signalAll();
+        } finally {
+            durabilityLock.unlock();
+        }
+
+        log.error("The journal {} has failed and takes no more records", file, e);
+    }
+
+    private static ByteBuffer frame(byte[] payload) {
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        return frame;
+    }
+
+    /**
+     * Waits until the records up to the one given are as durable as the {@link SyncPolicy} says, forcing the journal
+     * out if the policy is to force it for every transaction
+     *
+     * @param sequence Sequence number of the last record waited for
+     * @throws IOException if the records could not be forced out, in which case they are written but whether they
+     *                     survive a crash is not known, and the journal has failed
+     */
+    public void awaitDurable(long sequence) throws IOException {
+
+        switch (syncPolicy.getKind()) {
+            case PER_TRANSACTION:
+                if (!isDurable(sequence)) {
+                    force();
+                }
+                break;
+            case GROUP_COMMIT:
+                awaitCommit(sequence);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean isDurable(long sequence) {
+
+        durabilityLock.lock();
+        try {
+            return durable >= sequence;
+        } finally {
+            durabilityLock.unlock();
+        }
+    }
+
+    /*
+     * Forces out everything appended so far. Records appended while forcing are left for the next force
+     */
+    private void force() throws IOException {
+
+        long upTo = appendedSoFar();
+
+        if (failure != null) {
+            throw new IOException("The journal " + file + " could not be forced", failure);
+        }
+
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+
+        durabilityLock.lock();
+        try {
+            if (upTo > durable) {
+                durable = upTo;
+            }
+            forced.signalAll();
+        } finally {
+            durabilityLock.unlock();
+        }
+    }
+
+    private long appendedSoFar() {
+
+        appendLock.lock();
+        try {
+            return appended;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /*
+     * Leads a force of everything written so far if no force is under way, or follows the one that is, until the
+     * record is durable
+     */
+    private void awaitCommit(long sequence) throws IOException {
+
+        durabilityLock.lock();
+        try {
+            while (durable < sequence) {
+
+                if (failure != null) {
+                    throw new IOException("The journal " + file + " could not be forced", failure);
+                }
+
+                if (forcing) {
+                    forced.awaitUninterruptibly();
+                    continue;
+                }
+
+                forcing = true;
+
+                durabilityLock.unlock();
+                try {
+                    force();
+                } finally {
+                    durabilityLock.lock();
+                    forcing = false;
+                    forced.signalAll();
+                }
+            }
+        } finally {
+            durabilityLock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of records in the journal
+     */
+    public long size() {
+        return appendedSoFar();
+    }
+
+    /**
+     * Forces out whatever has been appended and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            if (syncPolicy.getKind() != SyncPolicy.Kind.NONE && failure == null) {
+                force();
+            }
+        } finally {
+            channel.close();
+        }
+
+        log.debug("Closed the journal {}", file);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.journal;
+
+/**
+ * Says when records appended to a {@link PostingJournal} are forced out to the storage device, which is what makes
+ * them survive a crash of the machine and not only of the process.
+ * <p>1. {@link #perTransaction()} forces the journal before each append returns, a transaction is durable once posted
+ * but each one costs a sync of the device</p>
+ * <p>2. {@link #groupCommit()} also makes a transaction durable once posted, but the appends made while one sync is
+ * under way wait for it to finish and then share the next, so that many posters pay for few syncs and a lone poster
+ * for no more than one</p>
+ * <p>3. {@link #none()} leaves it to the operating system, records survive the process but may not survive the machine</p>
+ *
+ * @author edwin.njeru
+ */
+public final class SyncPolicy {
+
+    enum Kind {
+        PER_TRANSACTION, GROUP_COMMIT, NONE
+    }
+
+    private final Kind kind;
+
+    private SyncPolicy(Kind kind) {
+        this.kind = kind;
+    }
+
+    public static SyncPolicy perTransaction() {
+
+        return new SyncPolicy(Kind.PER_TRANSACTION);
+    }
+
+    /**
+     * @return {@link SyncPolicy} sharing a force of the journal among all the records written while the one before
+     * it was under way
+     */
+    public static SyncPolicy groupCommit() {
+
+        return new SyncPolicy(Kind.GROUP_COMMIT);
+    }
+
+    public static SyncPolicy none() {
+
+        return new SyncPolicy(Kind.NONE);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String toString() {
+        return kind.toString();
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * An append-only {@link java.util.List} for any number of threads adding and reading at once, which takes the place
+ * of a {@link java.util.concurrent.CopyOnWriteArrayList} where elements are only ever added. Elements are kept in
+ * chunks of {@link #CHUNK_SIZE} which are never copied, so an add costs O(1) rather than a copy of the whole list.
+ * A thread adding swaps its element into the empty slot at the atomic tail and moves the tail past it. A thread which
+ * finds the slot already taken helps move the tail past it before trying the next slot, so no thread ever waits on
+ * another, and the tail only ever moves past slots which are filled, so readers never see a gap. Reads take no
+ * lock: the size read by a reader is a prefix of elements that will never change, and iterators, list iterators and
+ * spliterators go over the prefix there was when they were made, just like the snapshot iterators of a copy-on-write
+ * list. Elements cannot be removed or replaced, nor can they be null.
+ *
+ * @param <E> Type of the elements
+ * @author edwin.njeru
+ */
+public final class ChunkedAppendLog<E> extends AbstractList<E> implements RandomAccess {
+
+    public static final int CHUNK_SIZE = 1 << 10;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // a new directory is published whenever a chunk is added, so that a directory is never written once it is read
+    private volatile AtomicReferenceArray<Object>[] chunks = newDirectory(0);
+
+    // number of slots filled from the start, which is the size of the list
+    private final AtomicInteger tail = new AtomicInteger();
+
+    @Override
+    public boolean add(E element) {
+
+        Objects.requireNonNull(element, "Elements of the log cannot be null");
+
+        while (true) {
+
+            int index = tail.get();
+
+            if (index == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The log is full");
+            }
+
+            boolean added = chunkFor(index).compareAndSet(index & CHUNK_MASK, null, element);
+
+            // whether the slot is ours or another thread's, it is filled and the tail can move past it
+            tail.compareAndSet(index, index + 1);
+
+            if (added) {
+                return true;
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Object> chunkFor(int index) {
+
+        int chunk = index >>> CHUNK_SHIFT;
+
+        AtomicReferenceArray<Object>[] directory = chunks;
+
+        if (chunk < directory.length) {
+            return directory[chunk];
+        }
+
+        synchronized (this) {
+
+            directory = chunks;
+
+            if (chunk >= directory.length) {
+
+                AtomicReferenceArray<Object>[] grown = Arrays.copyOf(directory, chunk + 1);
+
+                for (int i = directory.length; i <= chunk; i++) {
+                    grown[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+                }
+
+                chunks = directory = grown;
+            }
+
+            return directory[chunk];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Object>[] newDirectory(int length) {
+        return (AtomicReferenceArray<Object>[]) new AtomicReferenceArray<?>[length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E element(AtomicReferenceArray<Object>[] chunks, int index) {
+        return (E) chunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+    }
+
+    @Override
+    public E get(int index) {
+
+        int size = tail.get();
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return element(chunks, index);
+    }
+
+    @Override
+    public int size() {
+        return tail.get();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+
+        int size = tail.get();
+
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return new SnapshotIterator<>(chunks, index, size);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+
+        int size = tail.get();
+
+        return new SnapshotSpliterator<>(chunks, 0, size);
+    }
+
+    /*
+     * Read-only list iterator over the elements published when it was made
+     */
+    private static final class SnapshotIterator<E> implements ListIterator<E> {
+
+        private final AtomicReferenceArray<Object>[] chunks;
+
+        private final int size;
+
+        private int cursor;
+
+        private SnapshotIterator(AtomicReferenceArray<Object>[] chunks, int cursor, int size) {
+            this.chunks = chunks;
+            this.cursor = cursor;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public E next() {
+
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+
+            int index = cursor++;
+
+            return element(chunks, index);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @Override
+        public E previous() {
+
+            if (cursor <= 0) {
+                throw new NoSuchElementException();
+            }
+
+            int index = --cursor;
+
+            return element(chunks, index);
+        }
+
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(E e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+     * Spliterator over the elements published when it was made, split in halves by index
+     */
+    private static final class SnapshotSpliterator<E> implements Spliterator<E> {
+
+        private final AtomicReferenceArray<Object>[] chunks;
+
+        private int from;
+
+        private final int to;
+
+        private SnapshotSpliterator(AtomicReferenceArray<Object>[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+
+            if (from >= to) {
+                return false;
+            }
+
+            int index = from++;
+
+            action.accept(element(chunks, index));
+
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+
+            for (int index = from; index < to; index++) {
+                action.accept(element(chunks, index));
+            }
+
+            from = to;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+
+            int middle = (from + to) >>> 1;
+
+            if (middle <= from) {
+                return null;
+            }
+
+            Spliterator<E> prefix = new SnapshotSpliterator<>(chunks, from, middle);
+
+            from = middle;
+
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.time.point.SimpleDate;
+import io.github.ghacupha.time.point.TimePoint;
+
+import java.time.LocalDate;
+
+/**
+ * Converts {@link TimePoint} dates to and from a count of days since 1970-01-01, for data structures that need to
+ * index or store booking dates as primitives. The {@link TimePoint} interface offers no accessors for the year, month
+ * and day, so they are read as digits straight off its ISO-8601 rendering (yyyy-MM-dd), which is what
+ * {@link SimpleDate#toString()} gives, and the day is worked out from them without going through a date parser.
+ * Dates rendered otherwise, or outside of the years 0 to 9999, are not supported; accounts refuse entries booked on
+ * them when checking the entries, see {@link #supports(TimePoint)}.
+ *
+ * @author edwin.njeru
+ */
+public final class EpochDays {
+
+    private static final int NOT_A_DATE = Integer.MIN_VALUE;
+
+    // days from 0000-01-01 to 1970-01-01
+    private static final int DAYS_0000_TO_1970 = 719528;
+
+    // cumulative days before the first of each month of a common year
+    private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+
+    private EpochDays() {
+    }
+
+    /**
+     * @param timePoint {@link TimePoint} to convert
+     * @return Number of days since 1970-01-01
+     * @throws IllegalArgumentException if the date is not one this can convert, which
+     * {@link #supports(TimePoint)} tells beforehand
+     */
+    public static int of(TimePoint timePoint) {
+
+        int epochDay = epochDay(timePoint.toString());
+
+        if (epochDay == NOT_A_DATE) {
+            throw new IllegalArgumentException("The date " + timePoint + " is not a calendar date from the year 0 to 9999");
+        }
+
+        return epochDay;
+    }
+
+    /**
+     * @param timePoint {@link TimePoint} to be converted
+     * @return true if {@link #of(TimePoint)} can convert the date
+     */
+    public static boolean supports(TimePoint timePoint) {
+
+        return timePoint != null && epochDay(timePoint.toString()) != NOT_A_DATE;
+    }
+
+    /**
+     * @param epochDay Number of days since 1970-01-01
+     * @return {@link TimePoint} of the day
+     */
+    public static TimePoint toTimePoint(int epochDay) {
+
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+
+        return new SimpleDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    // the epoch day of a yyyy-MM-dd rendering, or NOT_A_DATE
+    private static int epochDay(String iso) {
+
+        if (iso.length() != 10 || iso.charAt(4) != '-' || iso.charAt(7) != '-') {
+            return NOT_A_DATE;
+        }
+
+        int year = digits(iso, 0, 4);
+        int month = digits(iso, 5, 7);
+        int day = digits(iso, 8, 10);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1) {
+            return NOT_A_DATE;
+        }
+
+        boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+
+        int monthLength = month == 2 ? (leap ? 29 : 28) : 30 + ((month + (month >>> 3)) & 1);
+
+        if (day > monthLength) {
+            return NOT_A_DATE;
+        }
+
+        // days from 0000-01-01 to the first of the year, counting the leap days of the years before it
+        int yearsBefore = year - 1;
+        int daysBeforeYear = 365 * year + (year == 0 ? 0 : yearsBefore / 4 - yearsBefore / 100 + yearsBefore / 400 + 1);
+
+        int dayOfYear = DAYS_BEFORE_MONTH[month - 1] + (leap && month > 2 ? 1 : 0) + day - 1;
+
+        return daysBeforeYear + dayOfYear - DAYS_0000_TO_1970;
+    }
+
+    // the number in the digits from start inclusive to end exclusive, or -1 if any is not a digit
+    private static int digits(String text, int start, int end) {
+
+        int number = 0;
+
+        for (int i = start; i < end; i++) {
+
+            int digit = text.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+
+            number = number * 10 + digit;
+        }
+
+        return number;
+    }
+}
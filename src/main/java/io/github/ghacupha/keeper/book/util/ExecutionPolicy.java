@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Decides whether work over a collection of ledger items, such as the entries of an account or of a transaction, is
+ * done sequentially on the calling thread or as a parallel stream. Collections smaller than the parallel threshold are
+ * always done sequentially, since for a handful of items the fork-join overhead costs more than the work itself.
+ * Parallel work runs in the {@link ForkJoinPool} given to the policy, or in the common pool if none was given, so that
+ * ledger work can be kept from contending with everything else that uses the common pool. Trial balances, which hold
+ * posting locks while they work, only take from the policy whether to go parallel, and run in a pool of their own.
+ * The default policy used throughout the library can be replaced with {@link #setDefault(ExecutionPolicy)}, and its
+ * threshold can also be set through the system property {@value #THRESHOLD_PROPERTY}.
+ *
+ * @author edwin.njeru
+ */
+public final class ExecutionPolicy {
+
+    /**
+     * System property for the parallel threshold of the default policy
+     */
+    public static final String THRESHOLD_PROPERTY = "io.github.ghacupha.keeper.book.parallelThreshold";
+
+    /**
+     * Parallel threshold of the default policy unless set through the system property
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    private static volatile ExecutionPolicy defaultPolicy = sequentialBelow(Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_PARALLEL_THRESHOLD));
+
+    private final int parallelThreshold;
+
+    // null for the common pool
+    private final ForkJoinPool pool;
+
+    private ExecutionPolicy(int parallelThreshold, ForkJoinPool pool) {
+        this.parallelThreshold = parallelThreshold;
+        this.pool = pool;
+    }
+
+    /**
+     * @param parallelThreshold Size of collection from which work is done in parallel in the common pool
+     * @return {@link ExecutionPolicy}
+     */
+    public static ExecutionPolicy sequentialBelow(int parallelThreshold) {
+
+        return new ExecutionPolicy(parallelThreshold, null);
+    }
+
+    /**
+     * @param parallelThreshold Size of collection from which work is done in parallel
+     * @param pool {@link ForkJoinPool} dedicated to the ledger's parallel work
+     * @return {@link ExecutionPolicy}
+     */
+    public static ExecutionPolicy sequentialBelow(int parallelThreshold, ForkJoinPool pool) {
+
+        return new ExecutionPolicy(parallelThreshold, pool);
+    }
+
+    /**
+     * @return {@link ExecutionPolicy} which never goes parallel
+     */
+    public static ExecutionPolicy sequential() {
+
+        return new ExecutionPolicy(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @return {@link ExecutionPolicy} in use by the library
+     */
+    public static ExecutionPolicy getDefault() {
+
+        return defaultPolicy;
+    }
+
+    /**
+     * @param policy {@link ExecutionPolicy} to be used by the library from now on
+     */
+    public static void setDefault(ExecutionPolicy policy) {
+
+        defaultPolicy = policy;
+    }
+
+    /**
+     * @param size Number of items to be worked on
+     * @return true if the work is to be done in parallel
+     */
+    public boolean isParallel(int size) {
+
+        return size >= parallelThreshold;
+    }
+
+    /**
+     * @return {@link ForkJoinPool} in which parallel work is done
+     */
+    public ForkJoinPool getPool() {
+
+        return pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    /**
+     * @param items Collection of items to work on
+     * @param <T> Type of item
+     * @return A sequential or parallel {@link Stream} depending on the size of the collection. A parallel stream's
+     * terminal operation should be run through {@link #execute(Collection, Supplier)} for it to use the policy's pool
+     */
+    public <T> Stream<T> stream(Collection<T> items) {
+
+        return isParallel(items.size()) ? items.parallelStream() : items.stream();
+    }
+
+    /**
+     * Runs the task, which would typically end in a terminal operation on {@link #stream(Collection)}, in the policy's
+     * pool if the work is to be done in parallel, and on the calling thread otherwise
+     *
+     * @param items Collection of items the task works on
+     * @param task Work to be done
+     * @param <R> Type of result
+     * @return Result of the task
+     */
+    public <R> R execute(Collection<?> items, Supplier<R> task) {
+
+        if (pool == null || !isParallel(items.size()) || runningIn(pool)) {
+            return task.get();
+        }
+
+        return pool.submit(task::get).join();
+    }
+
+    /**
+     * Same as {@link #execute(Collection, Supplier)} for tasks which return nothing
+     *
+     * @param items Collection of items the task works on
+     * @param task Work to be done
+     */
+    public void run(Collection<?> items, Runnable task) {
+
+        execute(items, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private static boolean runningIn(ForkJoinPool pool) {
+
+        Thread thread = Thread.currentThread();
+
+        return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ExecutionPolicy{");
+        sb.append("parallelThreshold=").append(parallelThreshold);
+        sb.append(", pool=").append(pool == null ? "common" : pool);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+
+/**
+ * Thrown when a {@link Transaction} has been posted to its accounts and written to the journal, but the journal could
+ * not be forced out. Unlike other {@link UnableToPostException} cases the entries are in the accounts; whether the
+ * transaction is still there once the ledger is recovered from its journal after a crash is not known, since that
+ * depends on whether the record reached the storage device.
+ *
+ * @author edwin.njeru
+ */
+public class IndeterminatePostingException extends UnableToPostException {
+
+    private static final long serialVersionUID = -4178825470581723196L;
+
+    /**
+     * @param message the detail message
+     * @param cause   the failure to force the journal out
+     */
+    public IndeterminatePostingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.cash.HardCash;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Converts {@link Cash} amounts to and from an exact count of the currency's minor units, for instance cents for the
+ * dollar or cents for the Kenyan shilling. Sums of minor units are exact, they can be taken with plain {@code long}
+ * arithmetic and need only be converted back to {@link Cash} once, when the result is handed out.
+ *
+ * @author edwin.njeru
+ */
+public final class MinorUnits {
+
+    /**
+     * Largest number of minor units, 2^50, which {@link #toCash(long, Currency)} converts exactly: the gap between
+     * doubles that large is a quarter of a minor unit at most, whatever the number of decimal places of the currency
+     */
+    public static final long MAX_CASH = 1L << 50;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @param amount {@link Cash} amount
+     * @return The amount as a number of minor units of its {@link Currency}, rounded half-even should the amount
+     * carry more decimal places than the currency has
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long of(Cash amount) {
+
+        Number number = amount.getNumber();
+
+        BigDecimal decimal = number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+
+        return decimal.movePointRight(fractionDigits(amount.getCurrency())).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * Converts minor units back to {@link Cash}, which is made from a {@code double}. A double has 53 bits of precision,
+     * so that past about 2^53 minor units, and sooner for currencies with minor units, the amount would be rounded to a
+     * neighbouring one without anyone being told. Amounts are therefore only converted up to {@link #MAX_CASH} minor
+     * units either way, within which the double is close enough to the amount for it to be recovered exactly
+     *
+     * @param minorUnits Number of minor units of the currency
+     * @param currency {@link Currency} of the amount
+     * @return {@link Cash} amount of the minor units given
+     * @throws ArithmeticException if the amount is beyond {@link #MAX_CASH} minor units either way
+     */
+    public static Cash toCash(long minorUnits, Currency currency) {
+
+        if (minorUnits > MAX_CASH || minorUnits < -MAX_CASH) {
+            throw new ArithmeticException(minorUnits + " minor units of " + currency + " cannot be held exactly as cash");
+        }
+
+        return HardCash.of(BigDecimal.valueOf(minorUnits, fractionDigits(currency)).doubleValue(), currency);
+    }
+
+    private static int fractionDigits(Currency currency) {
+
+        // pseudo-currencies such as gold have no minor unit
+        return Math.max(currency.getDefaultFractionDigits(), 0);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the {@link Executor} on which transactions are posted when posted asynchronously without an executor of their
+ * own. Unless replaced with {@link #setDefault(Executor)} this starts a virtual thread per posting on JDK 21 and later,
+ * and runs postings on a fixed pool of daemon threads on earlier JDKs, whose size can be set through the system
+ * property {@value #THREADS_PROPERTY}. The journal and the accounts' posting locks are waited on through
+ * {@link java.util.concurrent.locks} rather than monitors, so that a virtual thread waiting on them lets go of its
+ * carrier and thousands of postings can wait at once at little cost.
+ *
+ * @author edwin.njeru
+ */
+public final class PostingExecutor {
+
+    /**
+     * System property for the number of posting threads on JDKs without virtual threads
+     */
+    public static final String THREADS_PROPERTY = "io.github.ghacupha.keeper.book.postingThreads";
+
+    private static volatile Executor defaultExecutor;
+
+    private PostingExecutor() {
+    }
+
+    /**
+     * @return {@link Executor} in use by the library, started on first use
+     */
+    public static Executor getDefault() {
+
+        Executor executor = defaultExecutor;
+
+        if (executor == null) {
+            synchronized (PostingExecutor.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = PostingThreads.newExecutor(Integer.getInteger(THREADS_PROPERTY, Math.max(2, Runtime.getRuntime().availableProcessors())));
+                }
+                executor = defaultExecutor;
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * @param executor {@link Executor} to be used by the library from now on. The executor being replaced is left
+     *                 running, for postings already given to it to finish
+     */
+    public static void setDefault(Executor executor) {
+
+        synchronized (PostingExecutor.class) {
+            defaultExecutor = executor;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts the threads postings run on by default. This is the version for JDKs without virtual threads, the one for
+ * JDK 21 and later is in src/main/java21 and is picked over this one from the multi-release jar.
+ *
+ * @author edwin.njeru
+ */
+final class PostingThreads {
+
+    private PostingThreads() {
+    }
+
+    /**
+     * @param threads Number of platform threads
+     * @return {@link Executor} running postings on a fixed pool of daemon threads
+     */
+    static Executor newExecutor(int threads) {
+
+        AtomicInteger started = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+
+            Thread thread = new Thread(runnable, "posting-" + started.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Starts the threads postings run on by default. This is the version for JDK 21 and later, which is picked from the
+ * multi-release jar over the one in src/main/java.
+ *
+ * @author edwin.njeru
+ */
+final class PostingThreads {
+
+    private PostingThreads() {
+    }
+
+    /**
+     * @param threads Number of platform threads, which virtual threads have no need of
+     * @return {@link Executor} starting a virtual thread per posting
+     */
+    static Executor newExecutor(int threads) {
+
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("posting-", 0).factory());
+    }
+}
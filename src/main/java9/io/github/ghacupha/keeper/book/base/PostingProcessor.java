@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.ImmutableEntryException;
+import io.github.ghacupha.keeper.book.util.PostingExecutor;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Posts a stream of {@link Transaction} items as they are published upstream, and publishes the {@link PostingResult}
+ * of each to its own subscribers. Transactions are requested from upstream a batch at a time, and the next batch only
+ * once every transaction of the last one has been posted and its result taken up by the subscribers' buffers, so that
+ * no more than a batch of transactions is ever waiting on this processor however fast upstream can publish, and a slow
+ * subscriber holds back upstream rather than having transactions pile up on the heap.
+ * Each transaction is posted on its own with {@link Transaction#post()}, so that one refused transaction is reported
+ * in its result without holding back the rest of its batch. As with {@link Transaction#postAsync()}, a runtime
+ * exception thrown on posting, such as from a failing journal, is reported in the result like any other refusal, so
+ * that it neither escapes {@link #onNext(Transaction)} nor stalls the stream.
+ *
+ * @author edwin.njeru
+ */
+public final class PostingProcessor extends SubmissionPublisher<PostingResult> implements Flow.Processor<Transaction, PostingResult> {
+
+    private static final Logger log = LoggerFactory.getLogger(PostingProcessor.class);
+
+    private final int batchSize;
+
+    private Flow.Subscription subscription;
+
+    // transactions of the current batch not yet received, only used by the thread delivering upstream signals
+    private int awaited;
+
+    private PostingProcessor(int batchSize, Executor executor) {
+
+        super(executor, batchSize);
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param batchSize Number of transactions requested from upstream at a time, which is also the number of results
+     *                  buffered for each subscriber
+     * @return {@link PostingProcessor} delivering results on the {@link PostingExecutor#getDefault() default posting
+     * executor}
+     */
+    public static PostingProcessor withBatchesOf(int batchSize) {
+
+        return withBatchesOf(batchSize, PostingExecutor.getDefault());
+    }
+
+    /**
+     * @param batchSize Number of transactions requested from upstream at a time, which is also the number of results
+     *                  buffered for each subscriber
+     * @param executor  {@link Executor} on which results are delivered to subscribers
+     * @return {@link PostingProcessor}
+     */
+    public static PostingProcessor withBatchesOf(int batchSize, Executor executor) {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Transactions are requested in batches of at least one, not " + batchSize);
+        }
+
+        return new PostingProcessor(batchSize, executor);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+
+        this.subscription = subscription;
+
+        requestBatch();
+    }
+
+    @Override
+    public void onNext(Transaction transaction) {
+
+        PostingResult result;
+
+        try {
+            transaction.post();
+
+            result = PostingResult.posted(transaction);
+
+        } catch (UnableToPostException | ImmutableEntryException | RuntimeException e) {
+
+            log.debug("Transaction {} refused : {}", transaction, e.getMessage());
+
+            result = PostingResult.refused(transaction, e);
+        }
+
+        // blocks while a subscriber's buffer is full, holding back the next request upstream
+        submit(result);
+
+        if (--awaited == 0) {
+            requestBatch();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+
+        closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+
+        close();
+    }
+
+    /**
+     * @return Number of transactions requested from upstream at a time
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    private void requestBatch() {
+
+        awaited = batchSize;
+
+        subscription.request(batchSize);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Transaction;
+
+/**
+ * Outcome of posting a {@link Transaction} through a {@link PostingProcessor}, being either posted or refused for the
+ * reason given
+ *
+ * @author edwin.njeru
+ */
+public final class PostingResult {
+
+    private final Transaction transaction;
+
+    // null when posted
+    private final Exception refusal;
+
+    private PostingResult(Transaction transaction, Exception refusal) {
+        this.transaction = transaction;
+        this.refusal = refusal;
+    }
+
+    /**
+     * @param transaction {@link Transaction} which was posted
+     * @return {@link PostingResult} of a posted transaction
+     */
+    public static PostingResult posted(Transaction transaction) {
+
+        return new PostingResult(transaction, null);
+    }
+
+    /**
+     * @param transaction {@link Transaction} which was not posted
+     * @param refusal     Exception thrown on posting the transaction
+     * @return {@link PostingResult} of a refused transaction
+     */
+    public static PostingResult refused(Transaction transaction, Exception refusal) {
+
+        return new PostingResult(transaction, refusal);
+    }
+
+    /**
+     * @return {@link Transaction} the result is for
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @return true if all of the transaction's entries were posted
+     */
+    public boolean isPosted() {
+        return refusal == null;
+    }
+
+    /**
+     * @return Exception for which the transaction was refused, or null if it was posted
+     */
+    public Exception getRefusal() {
+        return refusal;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PostingResult{");
+        sb.append("transaction=").append(transaction);
+        sb.append(", refusal=").append(refusal);
+        sb.append('}');
+        return sb.toString();
+    }
+}
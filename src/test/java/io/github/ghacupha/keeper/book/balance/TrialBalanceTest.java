@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.balance;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.base.AccountDetails;
+import io.github.ghacupha.keeper.book.util.ExecutionPolicy;
+import io.github.ghacupha.keeper.book.util.MismatchedCurrencyException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleAccount.makeAccount;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrialBalanceTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private final List<Account> chart = new ArrayList<>();
+
+    private Account bank;
+
+    @Before
+    public void setUp() throws Exception {
+
+        // small enough a threshold for the balances to be split across fork-join tasks
+        ExecutionPolicy.setDefault(ExecutionPolicy.sequentialBelow(100));
+
+        bank = makeAccount(DEBIT, KES, accountDetails("Bank", "1000", on(2018, 1, 1)));
+        chart.add(bank);
+
+        for (int i = 0; i < 2000; i++) {
+
+            Account customer = makeAccount(CREDIT, KES, accountDetails("Customer " + i, "2" + i, on(2018, 1, 1)));
+            chart.add(customer);
+
+            Transaction deposit = getTransaction("Deposit " + i, on(2018, 1, 2 + i % 20), KES);
+            deposit.addEntry(DEBIT, shilling(10 + i), bank, details("Deposit " + i));
+            deposit.addEntry(CREDIT, shilling(10 + i), customer, details("Deposit " + i));
+            deposit.post();
+        }
+    }
+
+    @After
+    public void tearDown() {
+
+        ExecutionPolicy.setDefault(ExecutionPolicy.sequentialBelow(ExecutionPolicy.DEFAULT_PARALLEL_THRESHOLD));
+    }
+
+    @Test
+    public void debitsEqualCredits() throws Exception {
+
+        TrialBalance trialBalance = TrialBalance.of(chart, on(2018, 12, 31));
+
+        assertTrue(trialBalance.isBalanced());
+        assertEquals(2001, trialBalance.size());
+        assertEquals(shilling(2019000), trialBalance.getTotalDebits());
+        assertEquals(newBalance(shilling(2019000), DEBIT), trialBalance.getAccountBalance(0));
+        assertEquals(newBalance(shilling(11), CREDIT), trialBalance.getAccountBalance(2));
+    }
+
+    @Test
+    public void anAccountOutOfTheChartLeavesItOutOfBalance() throws Exception {
+
+        TrialBalance trialBalance = TrialBalance.of(chart.subList(0, 1000), on(2018, 12, 31));
+
+        assertFalse(trialBalance.isBalanced());
+    }
+
+    @Test
+    public void balancesAreNotTakenInTheCommonPool() throws Exception {
+
+        Set<Thread> balancing = ConcurrentHashMap.newKeySet();
+
+        List<Account> watched = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            watched.add(new WatchedAccount(makeAccount(DEBIT, KES, accountDetails("Customer " + i, "3" + i, on(2018, 1, 1))), balancing));
+        }
+
+        assertTrue(TrialBalance.of(watched, on(2018, 12, 31)).isBalanced());
+
+        for (Thread thread : balancing) {
+
+            // postings run in the common pool could otherwise be waiting on the locks the trial balance holds
+            assertFalse(thread.getName(), thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == ForkJoinPool.commonPool());
+        }
+    }
+
+    @Test(expected = MismatchedCurrencyException.class)
+    public void accountsMustShareACurrency() throws Exception {
+
+        TrialBalance.of(Arrays.asList(bank, makeAccount(DEBIT, Currency.getInstance("USD"), accountDetails("Dollars", "1001", on(2018, 1, 1)))), on(2018, 12, 31));
+    }
+
+    /*
+     * Account noting the threads its balances are taken on
+     */
+    private static final class WatchedAccount implements Account {
+
+        private final Account account;
+        private final Set<Thread> balancing;
+
+        private WatchedAccount(Account account, Set<Thread> balancing) {
+            this.account = account;
+            this.balancing = balancing;
+        }
+
+        @Override
+        public long balanceMinorUnits(TimePoint asAt) {
+
+            balancing.add(Thread.currentThread());
+
+            return account.balanceMinorUnits(asAt);
+        }
+
+        @Override
+        public void addEntry(Entry entry) throws MismatchedCurrencyException, UntimelyBookingDateException {
+            account.addEntry(entry);
+        }
+
+        @Override
+        public AccountBalance balance(TimePoint asAt) {
+            return account.balance(asAt);
+        }
+
+        @Override
+        public AccountBalance balance(int... asAt) {
+            return account.balance(asAt);
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return account.getCurrency();
+        }
+
+        @Override
+        public TimePoint getOpeningDate() {
+            return account.getOpeningDate();
+        }
+
+        @Override
+        public AccountSide getAccountSide() {
+            return account.getAccountSide();
+        }
+
+        @Override
+        public List<Entry> getEntries() {
+            return account.getEntries();
+        }
+
+        @Override
+        public AccountDetails getAccountDetails() {
+            return account.getAccountDetails();
+        }
+
+        @Override
+        public void setAccountSide(AccountSide accountSide) {
+            account.setAccountSide(accountSide);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.cash.HardCash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.time.point.DateRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+
+/**
+ * Compares the full-scan balance of the {@link AccountAppraisalDelegate} with the two-pass stream implementation it
+ * replaced. Run with the gc profiler (the default in the benchmark profile) to see the allocation per balance call
+ * under gc.alloc.rate.norm:
+ * <pre>
+ *     mvn -Pbenchmark verify -Dbenchmark=AccountAppraisalDelegateBenchmark
+ * </pre>
+ *
+ * @author edwin.njeru
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountAppraisalDelegateBenchmark {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Param({"1000", "100000"})
+    private int entryCount;
+
+    private Account account;
+
+    private AccountAppraisalDelegate delegate;
+
+    private DateRange dateRange;
+
+    @Setup
+    public void setUp() {
+
+        List<Entry> entries = new ArrayList<>(entryCount);
+
+        account = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2015, 1, 1)), entries);
+
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(new SimpleEntry(i % 3 == 0 ? CREDIT : DEBIT, account, shilling(i % 1000), on(2015, 1, 1).addDays(i % 1500), details("Entry " + i)));
+        }
+
+        delegate = new AccountAppraisalDelegate(account, () -> entries, null);
+
+        dateRange = new DateRange(on(2015, 1, 1), on(2017, 12, 31));
+    }
+
+    @Benchmark
+    public AccountBalance fusedScan() {
+
+        return delegate.balance(dateRange);
+    }
+
+    @Benchmark
+    public AccountBalance twoPassStreams() {
+
+        // The implementation before the fused scan: a copy of the entries, then one parallel stream per side
+        List<Entry> entries = account.getEntries();
+
+        Cash debits = HardCash.of(entries.parallelStream()
+            .filter(entry -> dateRange.includes(entry.getBookingDate()))
+            .filter(entry -> entry.getAccountSide() == DEBIT)
+            .map(entry -> entry.getAmount().getNumber().doubleValue())
+            .reduce(0.00, (acc, value) -> acc + value), KES);
+
+        Cash credits = HardCash.of(account.getEntries().parallelStream()
+            .filter(entry -> dateRange.includes(entry.getBookingDate()))
+            .filter(entry -> entry.getAccountSide() == CREDIT)
+            .map(entry -> entry.getAmount().getNumber().doubleValue())
+            .reduce(0.00, (acc, value) -> acc + value), KES);
+
+        return delegate.balance(debits, credits);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class AccountBalancesTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount account;
+
+    // unordered, repeated and out of range dates
+    private final List<TimePoint> monthEnds = Arrays.asList(on(2018, 3, 31), on(2017, 12, 31), on(2018, 1, 31), on(2018, 3, 31), on(2018, 2, 28), on(2019, 1, 1));
+
+    @Before
+    public void setUp() throws Exception {
+
+        account = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 1, 10), details("Deposit")));
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(150), on(2018, 3, 5), details("Withdrawal")));
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(40), on(2018, 1, 31), details("Back dated deposit")));
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(60), on(2018, 2, 1), details("Deposit")));
+    }
+
+    @Test
+    public void balancesAgreeWithSingleEnquiries() throws Exception {
+
+        assertEquals(singleEnquiries(), account.balances(monthEnds));
+    }
+
+    @Test
+    public void sweepOverEntriesAgreesWithSingleEnquiries() throws Exception {
+
+        assertEquals(singleEnquiries(), new AccountAppraisalDelegate(account).balances(monthEnds));
+    }
+
+    private List<AccountBalance> singleEnquiries() {
+
+        return monthEnds.stream().map(account::balance).collect(Collectors.toList());
+    }
+}
@@ -131,4 +131,40 @@ public class AccountTest {
     }
 
 
-}
\ No newline at end of file
+
+    @Test
+    public void balanceIsOnTheLargerSideWhateverTheAccountSide() throws Exception {
+
+        Account loan = makeAccount(CREDIT, KES, accountDetails("Loan", "2500", on(2017, 1, 1)));
+
+        loan.addEntry(new SimpleEntry(CREDIT, loan, shilling(1000), on(2017, 2, 1), details("Drawdown")));
+        loan.addEntry(new SimpleEntry(DEBIT, loan, shilling(300), on(2017, 3, 1), details("Repayment")));
+
+        assertEquals(newBalance(shilling(700), CREDIT), loan.balance(2017, 12, 31));
+        assertEquals(newBalance(shilling(1000), CREDIT), loan.balance(2017, 2, 28));
+
+        loan.addEntry(new SimpleEntry(DEBIT, loan, shilling(900), on(2017, 4, 1), details("Overpayment")));
+
+        assertEquals(newBalance(shilling(200), DEBIT), loan.balance(2017, 12, 31));
+        assertEquals(newBalance(shilling(700), CREDIT), loan.balance(2017, 3, 31));
+
+        // reading a balance on the other side leaves the account where it was
+        assertEquals(CREDIT, loan.getAccountSide());
+    }
+
+    @Test
+    public void balanceOfNoughtIsOnTheAccountSide() throws Exception {
+
+        Account suspense = makeAccount(DEBIT, KES, accountDetails("Suspense", "1900", on(2017, 1, 1)));
+
+        suspense.addEntry(new SimpleEntry(DEBIT, suspense, shilling(50), on(2017, 2, 1), details("Unidentified receipt")));
+        suspense.addEntry(new SimpleEntry(CREDIT, suspense, shilling(50), on(2017, 2, 3), details("Receipt identified")));
+
+        assertEquals(newBalance(shilling(0), DEBIT), suspense.balance(2017, 12, 31));
+
+        suspense.setAccountSide(CREDIT);
+
+        assertEquals(newBalance(shilling(0), CREDIT), suspense.balance(2017, 12, 31));
+        assertEquals(newBalance(shilling(50), DEBIT), suspense.balance(2017, 2, 2));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.util.UnEnteredDetailsException;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class AttributesTest {
+
+    @Test
+    public void attributesAreKeptAgainstSharedLabels() throws Exception {
+
+        EntryDetails invoice = details("Billboards ltd inv 10");
+        invoice.setAttribute("invoiceNumber", "INV-10");
+        invoice.setAttribute("costCentre", "Marketing");
+
+        EntryDetails sameInvoice = details("Billboards ltd inv 10");
+        sameInvoice.setAttribute("costCentre", "Marketing");
+        sameInvoice.setAttribute("invoiceNumber", "INV-10");
+
+        assertEquals("INV-10", invoice.getAttribute("invoiceNumber"));
+        assertEquals(invoice, sameInvoice);
+        assertEquals(invoice.hashCode(), sameInvoice.hashCode());
+
+        sameInvoice.setAttribute("invoiceNumber", "INV-11");
+
+        assertNotEquals(invoice, sameInvoice);
+    }
+
+    @Test
+    public void attributesHashLikeAMap() {
+
+        EntryDetails invoice = details("Billboards ltd inv 10");
+        invoice.setAttribute("invoiceNumber", "INV-10");
+        invoice.setAttribute("costCentre", "Marketing");
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("invoiceNumber", "INV-10");
+        map.put("costCentre", "Marketing");
+
+        assertEquals(map, invoice.getEntryMap());
+        assertEquals(map.hashCode(), invoice.getEntryMap().hashCode());
+    }
+
+    @Test
+    public void detailsWithoutAttributesShareTheEmptyOnes() {
+
+        assertSame(details("One").getEntryMap(), details("Two").getEntryMap());
+        assertEquals(accountDetails("Cash", "1000", on(2018, 1, 1)), accountDetails("Cash", "1000", on(2018, 1, 1)));
+    }
+
+    @Test(expected = UnEnteredDetailsException.class)
+    public void attributesNeverSetCannotBeFound() throws Exception {
+
+        AccountDetails cash = accountDetails("Cash", "1000", on(2018, 1, 1));
+        cash.setAttribute("branch", "Nairobi");
+
+        cash.getAttribute("costCentre");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void attributesCannotBeSetThroughTheirMap() {
+
+        EntryDetails invoice = details("Billboards ltd inv 10");
+        invoice.setAttribute("invoiceNumber", "INV-10");
+
+        invoice.getEntryMap().put("costCentre", "Marketing");
+    }
+}
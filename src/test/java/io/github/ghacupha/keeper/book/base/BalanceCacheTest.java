@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class BalanceCacheTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount account;
+
+    @Before
+    public void setUp() throws Exception {
+
+        account = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 1, 10), details("Deposit")));
+
+        // balances as at dates from the latest entry on come from the running totals, which are not cached
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(10), on(2018, 2, 10), details("Deposit")));
+    }
+
+    @Test
+    public void repeatedEnquiriesAreAnsweredFromTheCache() throws Exception {
+
+        account.balance(2018, 1, 31);
+        account.balance(2018, 1, 31);
+        account.balance(2018, 1, 31);
+
+        assertEquals(1, account.getBalanceCacheMisses());
+        assertEquals(2, account.getBalanceCacheHits());
+    }
+
+    @Test
+    public void entriesInvalidateOnlyBalancesOnOrAfterTheirBookingDate() throws Exception {
+
+        account.balance(2018, 1, 15);
+        account.balance(2018, 1, 31);
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(50), on(2018, 1, 20), details("Deposit")));
+
+        assertEquals(newBalance(shilling(100), DEBIT), account.balance(2018, 1, 15));
+        assertEquals(newBalance(shilling(150), DEBIT), account.balance(2018, 1, 31));
+
+        assertEquals(1, account.getBalanceCacheHits());
+        assertEquals(3, account.getBalanceCacheMisses());
+    }
+
+    @Test
+    public void latestBalanceIsReadFromTheRunningTotals() throws Exception {
+
+        assertEquals(newBalance(shilling(110), DEBIT), account.balance(2018, 12, 31));
+        assertEquals(newBalance(shilling(110), DEBIT), account.balance(2018, 12, 31));
+
+        assertEquals(0, account.getBalanceCacheHits());
+        assertEquals(0, account.getBalanceCacheMisses());
+    }
+}
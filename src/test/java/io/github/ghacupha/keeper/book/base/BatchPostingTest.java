@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.journal.SyncPolicy;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchPostingTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Account cash;
+    private Account sales;
+    private Account bank;
+
+    @Before
+    public void setUp() throws Exception {
+
+        cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+        bank = new ColumnarAccount(DEBIT, KES, accountDetails("Bank", "1100", on(2018, 1, 1)));
+    }
+
+    @Test
+    public void batchIsPostedAsIfOneTransactionAtATime() throws Exception {
+
+        Account otherCash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1001", on(2018, 1, 1)));
+        Account otherSales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4001", on(2018, 1, 1)));
+        Account otherBank = new ColumnarAccount(DEBIT, KES, accountDetails("Bank", "1101", on(2018, 1, 1)));
+
+        List<Transaction> batch = statement(cash, sales, bank, 300, null);
+
+        SimpleTransaction.postAll(batch);
+
+        for (Transaction transaction : statement(otherCash, otherSales, otherBank, 300, null)) {
+            transaction.post();
+        }
+
+        assertEquals(otherCash.getEntries().size(), cash.getEntries().size());
+        assertEquals(otherBank.getEntries().size(), bank.getEntries().size());
+        assertEquals(300, sales.getEntries().size());
+
+        for (int day = 1; day <= 31; day += 5) {
+            assertEquals(otherCash.balanceMinorUnits(on(2018, 1, day)), cash.balanceMinorUnits(on(2018, 1, day)));
+            assertEquals(otherSales.balanceMinorUnits(on(2018, 1, day)), sales.balanceMinorUnits(on(2018, 1, day)));
+            assertEquals(otherBank.balanceMinorUnits(on(2018, 1, day)), bank.balanceMinorUnits(on(2018, 1, day)));
+        }
+
+        assertEquals(otherBank.balance(2018, 1, 20), bank.balance(2018, 1, 20));
+        assertEquals(-sales.balanceMinorUnits(on(2018, 12, 31)), cash.balanceMinorUnits(on(2018, 12, 31)) + bank.balanceMinorUnits(on(2018, 12, 31)));
+    }
+
+    @Test
+    public void nothingIsPostedWhenATransactionDoesNotBalance() throws Exception {
+
+        List<Transaction> batch = statement(cash, sales, bank, 10, null);
+
+        Transaction unbalanced = SimpleTransaction.getTransaction("Short receipt", on(2018, 1, 5), KES);
+        unbalanced.addEntry(DEBIT, shilling(100), cash, details("Receipt"));
+        unbalanced.addEntry(CREDIT, shilling(99), sales, details("Receipt"));
+        batch.add(unbalanced);
+
+        try {
+            SimpleTransaction.postAll(batch);
+            fail("The batch was posted although one of its transactions does not balance");
+        } catch (UnableToPostException e) {
+            assertTrue(e.getMessage().contains("debits are more than credits"));
+        }
+
+        assertTrue(cash.getEntries().isEmpty());
+        assertTrue(sales.getEntries().isEmpty());
+        assertTrue(bank.getEntries().isEmpty());
+    }
+
+    @Test
+    public void nothingIsPostedWhenAnAccountWouldRefuseItsEntries() throws Exception {
+
+        Account lateBank = new ColumnarAccount(DEBIT, KES, accountDetails("Bank", "1200", on(2018, 6, 1)));
+
+        try {
+            SimpleTransaction.postAll(statement(cash, sales, lateBank, 10, null));
+            fail("The batch was posted although one of its accounts was not yet open");
+        } catch (UnableToPostException e) {
+            assertTrue(e.getCause() instanceof UntimelyBookingDateException);
+        }
+
+        assertTrue(lateBank.getEntries().isEmpty());
+        assertTrue(cash.getEntries().isEmpty());
+        assertTrue(sales.getEntries().isEmpty());
+    }
+
+    @Test
+    public void batchIsJournaledBeforeItIsPosted() throws Exception {
+
+        Path file = folder.getRoot().toPath().resolve("postings.journal");
+
+        try (PostingJournal journal = PostingJournal.open(file, SyncPolicy.perTransaction())) {
+
+            SimpleTransaction.postAll(statement(cash, sales, bank, 50, journal));
+
+            assertEquals(50, journal.size());
+        }
+
+        assertEquals(50, PostingJournal.replay(file, payload -> { }));
+    }
+
+    @Test
+    public void columnsGrowOnceForABatch() throws Exception {
+
+        ColumnarAccount account = new ColumnarAccount(DEBIT, KES, accountDetails("Bank", "1300", on(2018, 1, 1)));
+
+        List<Entry> entries = new ArrayList<>();
+
+        for (int i = 0; i < HeapEntryStore.INITIAL_CAPACITY * 3; i++) {
+            entries.add(new SimpleEntry(i % 4 == 0 ? CREDIT : DEBIT, account, shilling(10), on(2018, 1, 1 + i % 28), details("Entry " + i)));
+        }
+
+        account.addEntries(entries);
+
+        assertEquals(entries.size(), account.getEntries().size());
+        assertEquals(details("Entry 100"), account.getEntries().get(100).getEntryDetails());
+        // three debits for every credit
+        assertEquals(96 * 1000, account.balanceMinorUnits(on(2018, 12, 31)));
+    }
+
+    /*
+     * Receipts alternating between cash and the bank, each against sales, over the days of January
+     */
+    private static List<Transaction> statement(Account cash, Account sales, Account bank, int count, PostingJournal journal) throws Exception {
+
+        List<Transaction> transactions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+
+            Transaction receipt = SimpleTransaction.getTransaction("Receipt " + i, on(2018, 1, 1 + i % 31), KES, journal);
+
+            receipt.addEntry(DEBIT, shilling(10 + i), i % 2 == 0 ? cash : bank, details("Receipt " + i));
+            receipt.addEntry(CREDIT, shilling(10 + i), sales, details("Receipt " + i));
+
+            transactions.add(receipt);
+        }
+
+        return transactions;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleAccount.makeAccount;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class BookingDateIndexTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private Account account;
+
+    private BookingDateIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+
+        account = makeAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2015, 1, 1)));
+
+        index = new BookingDateIndex(account);
+    }
+
+    @Test
+    public void sumsEntriesBookedOnOrBeforeTheDate() throws Exception {
+
+        index.add(new SimpleEntry(DEBIT, account, shilling(100), on(2015, 1, 1), details("Opening")));
+        index.add(new SimpleEntry(CREDIT, account, shilling(40), on(2015, 1, 10), details("Withdrawal")));
+        index.add(new SimpleEntry(DEBIT, account, shilling(25), on(2015, 1, 20), details("Deposit")));
+
+        assertEquals(0, index.sumsAsAt(on(2014, 12, 31)).getDebits());
+        assertEquals(10000, index.sumsAsAt(on(2015, 1, 9)).getDebits());
+        assertEquals(0, index.sumsAsAt(on(2015, 1, 9)).getCredits());
+        assertEquals(4000, index.sumsAsAt(on(2015, 1, 10)).getCredits());
+        assertEquals(12500, index.sumsAsAt(on(2030, 1, 1)).getDebits());
+    }
+
+    @Test
+    public void backDatedEntriesAreIncludedInLaterBalances() throws Exception {
+
+        index.add(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 6, 30), details("Deposit")));
+        index.add(new SimpleEntry(DEBIT, account, shilling(10), on(2016, 2, 29), details("Back dated deposit")));
+        index.add(new SimpleEntry(CREDIT, account, shilling(5), on(2017, 1, 1), details("Back dated withdrawal")));
+
+        assertEquals(1000, index.sumsAsAt(on(2016, 12, 31)).getDebits());
+        assertEquals(11000, index.sumsAsAt(on(2018, 6, 30)).getDebits());
+        assertEquals(500, index.sumsAsAt(on(2018, 6, 30)).getCredits());
+    }
+
+    @Test
+    public void accountBalancesAgreeWithTheIndex() throws Exception {
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(300), on(2017, 5, 1), details("Deposit")));
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(50), on(2016, 5, 1), details("Back dated withdrawal")));
+
+        assertEquals(newBalance(shilling(250), DEBIT), account.balance(2017, 5, 1));
+        assertEquals(newBalance(shilling(50), CREDIT), account.balance(2017, 4, 30));
+    }
+}
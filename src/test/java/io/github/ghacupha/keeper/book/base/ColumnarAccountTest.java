@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ColumnarAccountTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private ColumnarAccount account;
+
+    @Before
+    public void setUp() throws Exception {
+
+        account = new ColumnarAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 1, 10), details("January deposit")));
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(70), on(2018, 2, 10), details("February deposit, added early")));
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(30.50), on(2018, 1, 20), details("January withdrawal")));
+    }
+
+    @Test
+    public void balancesAreTakenFromTheColumns() throws Exception {
+
+        assertEquals(newBalance(shilling(100), DEBIT), account.balance(2018, 1, 15));
+        assertEquals(newBalance(shilling(69.50), DEBIT), account.balance(2018, 1, 31));
+        assertEquals(newBalance(shilling(139.50), DEBIT), account.balance(2018, 2, 10));
+        assertEquals(13950, account.balanceMinorUnits(on(2018, 12, 31)));
+        assertEquals(6950, account.balanceMinorUnits(on(2018, 1, 31)));
+
+        assertEquals(Arrays.asList(newBalance(shilling(139.50), DEBIT), newBalance(shilling(100), DEBIT)),
+            account.balances(Arrays.asList(on(2018, 3, 1), on(2018, 1, 19))));
+    }
+
+    @Test
+    public void entriesAreMadeFromTheColumns() throws Exception {
+
+        List<Entry> entries = account.getEntries();
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(5), on(2018, 3, 1), details("March deposit")));
+
+        assertEquals(3, entries.size());
+        assertEquals(4, account.getEntries().size());
+
+        Entry withdrawal = entries.get(2);
+
+        assertEquals(shilling(30.50), withdrawal.getAmount());
+        assertEquals(CREDIT, withdrawal.getAccountSide());
+        assertEquals(on(2018, 1, 20).toString(), withdrawal.getBookingDate().toString());
+        assertEquals(details("January withdrawal"), withdrawal.getEntryDetails());
+    }
+
+    @Test
+    public void closedPeriodsWorkOverTheColumns() throws Exception {
+
+        assertEquals(newBalance(shilling(69.50), DEBIT), account.closePeriod(on(2018, 1, 31)));
+
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(20), on(2018, 2, 15), details("February withdrawal")));
+
+        assertEquals(newBalance(shilling(119.50), DEBIT), account.closePeriod(on(2018, 2, 28)));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(5), on(2018, 3, 1), details("March deposit")));
+
+        assertEquals(newBalance(shilling(139.50), DEBIT), account.balance(2018, 2, 10));
+        assertEquals(newBalance(shilling(119.50), DEBIT), account.balance(2018, 2, 28));
+        assertEquals(newBalance(shilling(124.50), DEBIT), account.balance(2018, 3, 31));
+    }
+
+    @Test(expected = UntimelyBookingDateException.class)
+    public void entriesCannotBeBookedIntoAClosedPeriod() throws Exception {
+
+        account.closePeriod(on(2018, 1, 31));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(5), on(2018, 1, 31), details("Late January deposit")));
+    }
+
+    @Test(expected = UntimelyBookingDateException.class)
+    public void entriesOnDatesTheColumnsCannotHoldAreRefusedWhenChecked() throws Exception {
+
+        account.checkEntries(Arrays.asList(new SimpleEntry(DEBIT, account, shilling(5), on(10000, 1, 1), details("Far off deposit"))));
+    }
+
+    @Test
+    public void storeGrowsAndSharesDetails() throws Exception {
+
+        HeapEntryStore store = new HeapEntryStore(KES);
+
+        EntryDetails salary = details("Salary");
+
+        for (int i = 0; i < 1000; i++) {
+            store.append(i, 17532 + i % 30, i % 2 == 0, i % 10 == 0 ? details("Entry " + i) : salary);
+        }
+
+        long[] sums = new long[2];
+
+        store.sum(0, store.size(), 17532, 17532 + 9, sums);
+
+        long debits = 0;
+        long credits = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            if (i % 30 < 10) {
+                if (i % 2 == 0) {
+                    debits += i;
+                } else {
+                    credits += i;
+                }
+            }
+        }
+
+        assertEquals(1000, store.size());
+        assertEquals(debits, sums[0]);
+        assertEquals(credits, sums[1]);
+        assertEquals(salary, store.entryDetails(999));
+        assertEquals(details("Entry 990"), store.entryDetails(990));
+    }
+
+    @Test
+    public void entriesWithDetailsOfTheirOwnCostNoMoreThanTheColumnsAndATableSlot() {
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled());
+
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+
+        int count = 1 << 18;
+
+        EntryDetails[] narrations = new EntryDetails[count];
+
+        for (int i = 0; i < count; i++) {
+            narrations[i] = details("Entry " + i);
+        }
+
+        HeapEntryStore store = new HeapEntryStore(KES);
+
+        long before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        for (int i = 0; i < count; i++) {
+            store.append(i, 17532, i % 2 == 0, narrations[i]);
+        }
+
+        long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        // 16 bytes of columns and a table slot of at most 8 bytes an entry, allocated at most twice over as they grow
+        assertTrue("Allocated " + allocated / count + " bytes an entry", allocated < count * 2L * (16 + 8) + (1 << 16));
+        assertEquals(narrations[count - 1], store.entryDetails(count - 1));
+    }
+}
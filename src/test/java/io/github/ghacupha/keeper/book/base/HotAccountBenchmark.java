@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+
+/**
+ * Posts cash sales from many threads at once, each debiting the one cash account and crediting one of many sales
+ * accounts, with the cash account kept as a {@link SimpleAccount} or as a {@link HotAccount}. The simple cash account
+ * takes the threads one at a time, while the hot one should let them through side by side on as many processors as
+ * there are.
+ * <pre>
+ *     mvn -Pbenchmark verify -Dbenchmark=HotAccountBenchmark
+ * </pre>
+ *
+ * @author edwin.njeru
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(8)
+public class HotAccountBenchmark {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int SALES_ACCOUNTS = 64;
+
+    @Param({"simple", "hot"})
+    private String cashAccount;
+
+    private Account cash;
+
+    private Account[] sales;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+
+        cash = "hot".equals(cashAccount) ?
+            new HotAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1))) :
+            new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+
+        sales = new Account[SALES_ACCOUNTS];
+
+        for (int i = 0; i < SALES_ACCOUNTS; i++) {
+            sales[i] = new SimpleAccount(CREDIT, KES, accountDetails("Sales", String.valueOf(4000 + i), on(2018, 1, 1)));
+        }
+    }
+
+    @Benchmark
+    public void postCashSale() throws Exception {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 1 + random.nextInt(12), 1 + random.nextInt(28)), KES);
+        sale.addEntry(DEBIT, shilling(100), cash, details("Cash sale"));
+        sale.addEntry(CREDIT, shilling(100), sales[random.nextInt(SALES_ACCOUNTS)], details("Cash sale"));
+        sale.post();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HotAccountTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int THREADS = 8;
+
+    private static final int ENTRIES_PER_THREAD = 5000;
+
+    private HotAccount cash;
+
+    @Before
+    public void setUp() {
+
+        cash = new HotAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)), 4);
+    }
+
+    @Test
+    public void entriesFromManyThreadsAreAllCounted() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            List<Future<?>> adders = new ArrayList<>();
+
+            for (int thread = 0; thread < THREADS; thread++) {
+
+                int day = 1 + thread;
+
+                adders.add(executor.submit(() -> {
+
+                    for (int i = 0; i < ENTRIES_PER_THREAD; i++) {
+
+                        if (i % 2 == 0) {
+                            cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(3), on(2018, 1, day), details("Takings")));
+                        } else {
+                            cash.addEntries(Arrays.asList(
+                                new SimpleEntry(CREDIT, cash, shilling(1), on(2018, 2, day), details("Banked")),
+                                new SimpleEntry(CREDIT, cash, shilling(0.5), on(2018, 2, day), details("Bank charge"))));
+                        }
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<?> adder : adders) {
+                adder.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int half = THREADS * ENTRIES_PER_THREAD / 2;
+
+        assertEquals(half * 3, cash.getEntries().size());
+        assertEquals(half * 300L - half * 150L, cash.balanceMinorUnits(on(2018, 12, 31)));
+        assertEquals(newBalance(shilling(half * 3), DEBIT), cash.balance(2018, 1, 31));
+        assertEquals(newBalance(shilling(half * 1.5), DEBIT), cash.balance(2018, 12, 31));
+
+        long debits = 0;
+
+        for (Entry entry : cash.getEntries()) {
+            debits += entry.getAccountSide() == DEBIT ? entry.getAmountMinorUnits() : -entry.getAmountMinorUnits();
+        }
+
+        assertEquals(cash.balanceMinorUnits(on(2018, 12, 31)), debits);
+    }
+
+    @Test
+    public void balancesInThePastAreAddedUpOverTheStripes() throws Exception {
+
+        cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(100), on(2018, 1, 10), details("Deposit")));
+        cash.addEntry(new SimpleEntry(CREDIT, cash, shilling(250), on(2018, 3, 10), details("Payment")));
+        cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(40), on(2018, 2, 10), details("Deposit")));
+
+        assertEquals(newBalance(shilling(100), DEBIT), cash.balance(2018, 1, 31));
+        assertEquals(newBalance(shilling(140), DEBIT), cash.balance(2018, 2, 28));
+        assertEquals(newBalance(shilling(110), CREDIT), cash.balance(2018, 3, 31));
+        assertEquals(-11000, cash.balanceMinorUnits(on(2018, 3, 31)));
+    }
+
+    @Test
+    public void sideSetIsPublishedInEveryStripe() throws Exception {
+
+        SimpleAccount simple = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+
+        for (Account account : Arrays.asList(cash, simple)) {
+            account.addEntry(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 1, 10), details("Deposit")));
+            account.setAccountSide(CREDIT);
+        }
+
+        assertEquals(CREDIT, cash.getAccountSide());
+        assertEquals(simple.balance(on(2018, 1, 31)), cash.balance(on(2018, 1, 31)));
+    }
+
+    @Test
+    public void closedPeriodsRefuseEntries() throws Exception {
+
+        cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(100), on(2018, 1, 10), details("Deposit")));
+
+        assertEquals(newBalance(shilling(100), DEBIT), cash.closePeriod(on(2018, 1, 31)));
+
+        try {
+            cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(5), on(2018, 1, 31), details("Late deposit")));
+            fail("An entry was booked into a closed period");
+        } catch (UntimelyBookingDateException e) {
+            // expected
+        }
+
+        cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(5), on(2018, 2, 1), details("Deposit")));
+
+        assertEquals(newBalance(shilling(105), DEBIT), cash.balance(2018, 2, 1));
+        assertEquals(on(2018, 1, 31).toString(), cash.getLatestClosingDate().toString());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Restores a ledger from a snapshot. Run with the recovery profile for the full sized ledger of 10M entries:
+ * <pre>
+ *     mvn -Precovery test
+ * </pre>
+ */
+public class LedgerRecoveryTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerRecoveryTest.class);
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int ENTRIES = Integer.getInteger("io.github.ghacupha.keeper.book.recovery.entries", 200_000);
+
+    private static final long MAX_MILLIS = Long.getLong("io.github.ghacupha.keeper.book.recovery.maxMillis", 60_000);
+
+    private static final int ACCOUNTS = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ledgersAreRestoredQuickly() throws Exception {
+
+        Path snapshotFile = folder.newFile("snapshot").toPath();
+
+        List<Account> accounts = new ArrayList<>();
+
+        long expected = 0;
+
+        EntryDetails[] narrations = {details("Deposit"), details("Withdrawal"), details("Charges")};
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+
+            HeapEntryStore store = new HeapEntryStore(KES);
+
+            for (int position = 0; position < ENTRIES / ACCOUNTS; position++) {
+
+                boolean debit = position % 3 != 1;
+
+                store.append(position % 10_000, 17532 + position % 365, debit, narrations[position % 3]);
+
+                expected += debit ? position % 10_000 : -(position % 10_000);
+            }
+
+            accounts.add(new ColumnarAccount(DEBIT, KES, accountDetails("Customer " + i, String.valueOf(i), on(2018, 1, 1)), store));
+        }
+
+        LedgerSnapshot.write(snapshotFile, accounts, 0);
+
+        accounts = null;
+
+        long start = System.nanoTime();
+
+        LedgerSnapshot snapshot = LedgerSnapshot.read(snapshotFile);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        log.info("Restored {} entries in {} ms", ENTRIES, millis);
+
+        long restored = 0;
+
+        for (Account account : snapshot.getAccounts().values()) {
+            restored += account.balanceMinorUnits(on(2019, 12, 31));
+        }
+
+        assertEquals(expected, restored);
+        assertTrue("Restoring " + ENTRIES + " entries took " + millis + " ms", millis <= MAX_MILLIS);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.journal.SyncPolicy;
+import io.github.ghacupha.keeper.book.util.EpochDays;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LedgerSnapshotTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ledgersAreRestoredFromTheSnapshotAndTheJournalTail() throws Exception {
+
+        Path journalFile = folder.newFile("journal").toPath();
+        Path snapshotFile = folder.newFile("snapshot").toPath();
+
+        Account cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account loans = new ColumnarAccount(CREDIT, KES, accountDetails("Loans", "2000", on(2018, 1, 1)));
+
+        try (PostingJournal journal = PostingJournal.open(journalFile, SyncPolicy.none())) {
+
+            post(journal, "Loan", on(2018, 1, 10), cash, loans, 1000.25);
+            post(journal, "Repayment", on(2018, 1, 20), loans, cash, 200);
+
+            cash.closePeriod(on(2018, 1, 31));
+
+            LedgerSnapshot.write(snapshotFile, Arrays.asList(cash, loans), journal.size());
+
+            post(journal, "Second loan", on(2018, 2, 5), cash, loans, 300.10);
+        }
+
+        LedgerSnapshot snapshot = LedgerSnapshot.read(snapshotFile);
+
+        assertEquals(2, snapshot.getJournalSequence());
+        assertEquals(1, snapshot.replay(journalFile));
+        assertEquals(3, snapshot.getJournalSequence());
+
+        Account restoredCash = snapshot.getAccounts().get("1000");
+        Account restoredLoans = snapshot.getAccounts().get("2000");
+
+        for (int[] date : new int[][]{{2018, 1, 15}, {2018, 1, 31}, {2018, 2, 28}}) {
+
+            assertEquals(cash.balance(date), restoredCash.balance(date));
+            assertEquals(loans.balanceMinorUnits(on(date[0], date[1], date[2])), restoredLoans.balanceMinorUnits(on(date[0], date[1], date[2])));
+        }
+
+        assertEquals("Second loan", restoredLoans.getEntries().get(2).getEntryDetails().getNarration());
+        assertEquals(cash.getAccountSide(), restoredCash.getAccountSide());
+    }
+
+    @Test(expected = UntimelyBookingDateException.class)
+    public void closedPeriodsStayClosed() throws Exception {
+
+        Path snapshotFile = folder.newFile("snapshot").toPath();
+
+        Account cash = new ColumnarAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(10), on(2018, 1, 10), details("Deposit")));
+        cash.closePeriod(on(2018, 1, 31));
+
+        LedgerSnapshot.write(snapshotFile, Arrays.asList(cash), 0);
+
+        Account restored = LedgerSnapshot.read(snapshotFile).getAccounts().get("1000");
+
+        restored.addEntry(new SimpleEntry(DEBIT, restored, shilling(10), on(2018, 1, 30), details("Late deposit")));
+    }
+
+    @Test
+    public void recordWhoseLaterLegCannotBeReplayedIsNotHalfPosted() throws Exception {
+
+        Path journalFile = folder.newFile("journal").toPath();
+        Path snapshotFile = folder.newFile("snapshot").toPath();
+
+        Account cash = new ColumnarAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account loans = new ColumnarAccount(CREDIT, KES, accountDetails("Loans", "2000", on(2018, 1, 1)));
+
+        try (PostingJournal journal = PostingJournal.open(journalFile, SyncPolicy.none())) {
+
+            // the loans account is left out of the snapshot
+            LedgerSnapshot.write(snapshotFile, Collections.singletonList(cash), journal);
+
+            post(journal, "Loan", on(2018, 1, 10), cash, loans, 1000);
+        }
+
+        LedgerSnapshot snapshot = LedgerSnapshot.read(snapshotFile);
+
+        try {
+            snapshot.replay(journalFile);
+            fail("The loan was replayed into a ledger without the loans account");
+        } catch (IOException expected) {
+            // the cash leg goes first and must not have been posted on its own
+        }
+
+        assertEquals(0, snapshot.getAccounts().get("1000").getEntries().size());
+        assertEquals(0, snapshot.getJournalSequence());
+    }
+
+    @Test
+    public void recordWithAnAmountTooLargeForCashIsReportedAsCorrupt() throws Exception {
+
+        Path journalFile = folder.newFile("journal").toPath();
+        Path snapshotFile = folder.newFile("snapshot").toPath();
+
+        Account cash = new ColumnarAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account loans = new ColumnarAccount(CREDIT, KES, accountDetails("Loans", "2000", on(2018, 1, 1)));
+
+        try (PostingJournal journal = PostingJournal.open(journalFile, SyncPolicy.none())) {
+
+            LedgerSnapshot.write(snapshotFile, Arrays.asList(cash, loans), journal);
+
+            post(journal, "Loan", on(2018, 1, 10), cash, loans, 1000);
+
+            // a record as SimpleTransaction writes it, but for amounts beyond what cash holds exactly
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+
+                out.writeUTF("Corrupt loan");
+                out.writeInt(EpochDays.of(on(2018, 1, 11)));
+                out.writeUTF("KES");
+                out.writeInt(2);
+
+                for (Account account : Arrays.asList(cash, loans)) {
+                    out.writeBoolean(account == cash);
+                    out.writeLong(Long.MAX_VALUE);
+                    out.writeUTF(account.getAccountDetails().getNumber());
+                    out.writeUTF("Corrupt loan");
+                }
+            }
+
+            journal.append(bytes.toByteArray());
+        }
+
+        LedgerSnapshot snapshot = LedgerSnapshot.read(snapshotFile);
+
+        try {
+            snapshot.replay(journalFile);
+            fail("A record with an amount too large for cash was replayed");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("record 2"));
+        }
+
+        assertEquals(1, snapshot.getAccounts().get("1000").getEntries().size());
+        assertEquals(1, snapshot.getJournalSequence());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void snapshotIsNotWrittenHalfWayThroughAPosting() throws Exception {
+
+        Path journalFile = folder.newFile("journal").toPath();
+        Path snapshotFile = folder.newFile("snapshot").toPath();
+
+        Account cash = new ColumnarAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account loans = new ColumnarAccount(CREDIT, KES, accountDetails("Loans", "2000", on(2018, 1, 1)));
+
+        try (PostingJournal journal = PostingJournal.open(journalFile, SyncPolicy.none())) {
+
+            Thread writer;
+
+            // a posting under way, with one of its legs applied
+            try (PostingLocks.Hold posting = PostingLocks.forPosting(Arrays.asList(cash, loans))) {
+
+                cash.addEntry(new SimpleEntry(DEBIT, cash, shilling(10), on(2018, 1, 10), details("Deposit")));
+
+                writer = new Thread(() -> {
+                    try {
+                        LedgerSnapshot.write(snapshotFile, Arrays.asList(cash, loans), journal);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.start();
+                writer.join(200);
+
+                assertTrue("The snapshot was written while a posting was under way", writer.isAlive());
+
+                loans.addEntry(new SimpleEntry(CREDIT, loans, shilling(10), on(2018, 1, 10), details("Deposit")));
+            }
+
+            writer.join();
+        }
+
+        LedgerSnapshot snapshot = LedgerSnapshot.read(snapshotFile);
+
+        assertEquals(1, snapshot.getAccounts().get("1000").getEntries().size());
+        assertEquals(1, snapshot.getAccounts().get("2000").getEntries().size());
+    }
+
+    private static void post(PostingJournal journal, String label, TimePoint date, Account debit, Account credit, double amount) throws Exception {
+
+        Transaction transaction = getTransaction(label, date, KES, journal);
+        transaction.addEntry(DEBIT, shilling(amount), debit, details(label));
+        transaction.addEntry(CREDIT, shilling(amount), credit, details(label));
+        transaction.post();
+    }
+}
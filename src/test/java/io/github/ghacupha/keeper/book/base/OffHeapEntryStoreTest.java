@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OffHeapEntryStoreTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void directStoreAgreesWithTheHeapStore() {
+
+        assertAgreesWithTheHeapStore(OffHeapEntryStore.direct(KES));
+    }
+
+    @Test
+    public void mappedStoreAgreesWithTheHeapStore() throws Exception {
+
+        assertAgreesWithTheHeapStore(OffHeapEntryStore.mapped(KES, folder.newFile("entries").toPath()));
+    }
+
+    @Test
+    public void mappedAccountsBalance() throws Exception {
+
+        Account account = ColumnarAccount.makeMappedAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)), folder.newFile("cash").toPath());
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 1, 10), details("January deposit")));
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(30.50), on(2018, 1, 20), details("January withdrawal")));
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(70), on(2018, 2, 10), details("February deposit")));
+
+        assertEquals(newBalance(shilling(69.50), DEBIT), account.balance(2018, 1, 31));
+        assertEquals(newBalance(shilling(139.50), DEBIT), account.balance(2018, 2, 28));
+        assertEquals(shilling(30.50), account.getEntries().get(1).getAmount());
+    }
+
+    @Test
+    public void closingAStoreFreesItsChunks() throws Exception {
+
+        for (EntryStore store : new EntryStore[]{OffHeapEntryStore.direct(KES), OffHeapEntryStore.mapped(KES, folder.newFile("closed").toPath())}) {
+
+            for (int i = 0; i < OffHeapEntryStore.CHUNK_RECORDS * 2; i++) {
+                store.append(i, 17532, true, null);
+            }
+
+            long before = bufferMemory();
+
+            store.close();
+
+            assertTrue(before - bufferMemory() >= 2L * OffHeapEntryStore.CHUNK_RECORDS * OffHeapEntryStore.RECORD_BYTES);
+            assertEquals(0, store.size());
+
+            try {
+                store.append(1, 17532, true, null);
+                fail("A closed store took an entry");
+            } catch (IllegalStateException expected) {
+                // the store is closed
+            }
+        }
+    }
+
+    // spans more than one chunk
+    private static void assertAgreesWithTheHeapStore(EntryStore store) {
+
+        HeapEntryStore heapStore = new HeapEntryStore(KES);
+
+        EntryDetails salary = details("Salary");
+
+        int count = OffHeapEntryStore.CHUNK_RECORDS * 2 + 100;
+
+        for (int i = 0; i < count; i++) {
+
+            EntryDetails entryDetails = i % 1000 == 0 ? details("Entry " + i) : salary;
+
+            store.append(i, 17532 + i % 365, i % 3 == 0, entryDetails);
+            heapStore.append(i, 17532 + i % 365, i % 3 == 0, entryDetails);
+        }
+
+        assertEquals(count, store.size());
+
+        for (int[] range : new int[][]{{0, count}, {10, OffHeapEntryStore.CHUNK_RECORDS + 10}, {OffHeapEntryStore.CHUNK_RECORDS - 1, OffHeapEntryStore.CHUNK_RECORDS + 1}}) {
+
+            long[] sums = new long[2];
+            long[] expected = new long[2];
+
+            store.sum(range[0], range[1], 17532 + 30, 17532 + 200, sums);
+            heapStore.sum(range[0], range[1], 17532 + 30, 17532 + 200, expected);
+
+            assertEquals(expected[0], sums[0]);
+            assertEquals(expected[1], sums[1]);
+        }
+
+        for (int position : new int[]{0, 1, OffHeapEntryStore.CHUNK_RECORDS, count - 1}) {
+
+            assertEquals(heapStore.amountMinorUnits(position), store.amountMinorUnits(position));
+            assertEquals(heapStore.bookingDay(position), store.bookingDay(position));
+            assertEquals(heapStore.isDebit(position), store.isDebit(position));
+            assertEquals(heapStore.entryDetails(position), store.entryDetails(position));
+        }
+    }
+
+    // memory held by direct and mapped buffers
+    private static long bufferMemory() {
+
+        long used = 0;
+
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            used += pool.getMemoryUsed();
+        }
+
+        return used;
+    }
+}
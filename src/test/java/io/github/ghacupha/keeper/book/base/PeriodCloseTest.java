@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class PeriodCloseTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private SimpleAccount account;
+
+    @Before
+    public void setUp() throws Exception {
+
+        account = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(100), on(2018, 1, 10), details("January deposit")));
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(70), on(2018, 2, 10), details("February deposit, added early")));
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(30), on(2018, 1, 20), details("January withdrawal")));
+    }
+
+    @Test
+    public void closingAPeriodRecordsItsBalance() throws Exception {
+
+        assertEquals(newBalance(shilling(70), DEBIT), account.closePeriod(on(2018, 1, 31)));
+    }
+
+    @Test(expected = UntimelyBookingDateException.class)
+    public void entriesCannotBeBookedIntoAClosedPeriod() throws Exception {
+
+        account.closePeriod(on(2018, 1, 31));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(5), on(2018, 1, 31), details("Late January deposit")));
+    }
+
+    @Test(expected = UntimelyBookingDateException.class)
+    public void periodsCannotBeClosedTwice() throws Exception {
+
+        account.closePeriod(on(2018, 1, 31));
+
+        account.closePeriod(on(2018, 1, 15));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void accountsKeepingNoPeriodsRefuseToCloseOne() throws Exception {
+
+        new AssignableCollectionAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)), Collections.emptyList()).closePeriod(on(2018, 1, 31));
+    }
+
+    @Test
+    public void scansStartFromTheLatestCheckpoint() throws Exception {
+
+        AccountAppraisalDelegate scanningDelegate = new AccountAppraisalDelegate(account);
+
+        scanningDelegate.closePeriod(on(2018, 1, 31));
+
+        account.addEntry(new SimpleEntry(CREDIT, account, shilling(20), on(2018, 2, 15), details("February withdrawal")));
+
+        scanningDelegate.closePeriod(on(2018, 2, 28));
+
+        account.addEntry(new SimpleEntry(DEBIT, account, shilling(5), on(2018, 3, 1), details("March deposit")));
+
+        assertEquals(newBalance(shilling(70), DEBIT), scanningDelegate.scan(on(2018, 1, 31)));
+        assertEquals(newBalance(shilling(140), DEBIT), scanningDelegate.scan(on(2018, 2, 10)));
+        assertEquals(newBalance(shilling(120), DEBIT), scanningDelegate.scan(on(2018, 2, 28)));
+        assertEquals(newBalance(shilling(125), DEBIT), scanningDelegate.scan(on(2018, 3, 31)));
+        assertEquals(account.balance(2018, 3, 31), scanningDelegate.scan(on(2018, 3, 31)));
+    }
+}
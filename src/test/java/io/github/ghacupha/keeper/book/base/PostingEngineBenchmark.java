@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Currency;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+
+/**
+ * Posts transfers between accounts picked at random from many threads at once, either through
+ * {@link SimpleTransaction#post()} on the calling thread or through a {@link PostingEngine} with the given number of
+ * shards, waiting for each transfer to be posted.
+ * <pre>
+ *     mvn -Pbenchmark verify -Dbenchmark=PostingEngineBenchmark
+ * </pre>
+ *
+ * @author edwin.njeru
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(8)
+public class PostingEngineBenchmark {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int ACCOUNTS = 256;
+
+    // no shards means posting on the calling thread
+    @Param({"0", "1", "4"})
+    private int shards;
+
+    private PostingEngine engine;
+
+    private Account[] chart;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+
+        engine = shards == 0 ? null : PostingEngine.start(shards);
+
+        chart = new Account[ACCOUNTS];
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            chart[i] = new SimpleAccount(DEBIT, KES, accountDetails("Account " + i, String.valueOf(3000 + i), on(2018, 1, 1)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Benchmark
+    public void postTransfer() throws Exception {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        Transaction transfer = getTransaction("Transfer", on(2018, 1 + random.nextInt(12), 1 + random.nextInt(28)), KES);
+        transfer.addEntry(DEBIT, shilling(100), chart[random.nextInt(ACCOUNTS)], details("Transfer in"));
+        transfer.addEntry(CREDIT, shilling(100), chart[random.nextInt(ACCOUNTS)], details("Transfer out"));
+
+        if (engine == null) {
+            transfer.post();
+        } else {
+            engine.submit(transfer).join();
+        }
+    }
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.balance.TrialBalance;
+import io.github.ghacupha.keeper.book.journal.ControlledChannel;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.journal.SyncPolicy;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import io.github.ghacupha.keeper.book.util.UntimelyBookingDateException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PostingEngineTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int ACCOUNTS = 24;
+
+    private static final int SUBMITTERS = 4;
+
+    private static final int TRANSFERS_PER_SUBMITTER = 2000;
+
+    private final List<Account> chart = new ArrayList<>();
+
+    private PostingEngine engine;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+
+        engine = PostingEngine.start(4);
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+
+            AccountDetails accountDetails = accountDetails("Account " + i, String.valueOf(3000 + i), on(2018, 1, 1));
+
+            chart.add(i % 2 == 0 ? new SimpleAccount(DEBIT, KES, accountDetails) : new ColumnarAccount(DEBIT, KES, accountDetails));
+        }
+    }
+
+    @After
+    public void tearDown() {
+
+        engine.close();
+    }
+
+    @Test
+    public void transfersArePostedWholeAcrossShards() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(SUBMITTERS + 1);
+
+        AtomicBoolean submitting = new AtomicBoolean(true);
+
+        try {
+            Future<Integer> trialBalances = executor.submit(() -> {
+
+                int taken = 0;
+
+                while (submitting.get()) {
+
+                    TrialBalance trialBalance = engine.trialBalance(chart, on(2018, 12, 31));
+
+                    if (!trialBalance.isBalanced()) {
+                        throw new AssertionError("Trial balance out of balance : " + trialBalance);
+                    }
+
+                    taken++;
+                }
+
+                return taken;
+            });
+
+            List<Future<List<CompletableFuture<Transaction>>>> submitters = new ArrayList<>();
+
+            for (int submitter = 0; submitter < SUBMITTERS; submitter++) {
+
+                Random random = new Random(submitter);
+
+                submitters.add(executor.submit(() -> {
+
+                    List<CompletableFuture<Transaction>> posted = new ArrayList<>();
+
+                    for (int i = 0; i < TRANSFERS_PER_SUBMITTER; i++) {
+
+                        Transaction transfer = getTransaction("Transfer", on(2018, 1 + random.nextInt(12), 1 + random.nextInt(28)), KES);
+                        transfer.addEntry(DEBIT, shilling(100), chart.get(random.nextInt(ACCOUNTS)), details("Transfer in"));
+                        transfer.addEntry(DEBIT, shilling(1), chart.get(random.nextInt(ACCOUNTS)), details("Transfer fee"));
+                        transfer.addEntry(CREDIT, shilling(101), chart.get(random.nextInt(ACCOUNTS)), details("Transfer out"));
+
+                        posted.add(engine.submit(transfer));
+                    }
+
+                    return posted;
+                }));
+            }
+
+            for (Future<List<CompletableFuture<Transaction>>> submitter : submitters) {
+                for (CompletableFuture<Transaction> posted : submitter.get(60, TimeUnit.SECONDS)) {
+                    posted.get(60, TimeUnit.SECONDS);
+                }
+            }
+
+            submitting.set(false);
+
+            assertTrue(trialBalances.get(60, TimeUnit.SECONDS) > 0);
+
+        } finally {
+            submitting.set(false);
+            executor.shutdownNow();
+        }
+
+        int entries = 0;
+
+        for (Account account : chart) {
+            entries += account.getEntries().size();
+        }
+
+        assertEquals(SUBMITTERS * TRANSFERS_PER_SUBMITTER * 3, entries);
+        assertTrue(engine.trialBalance(chart, on(2018, 12, 31)).isBalanced());
+    }
+
+    @Test
+    public void snapshotsTakeInExactlyTheTransactionsTheirJournalSequenceCovers() throws Exception {
+
+        List<Path> snapshots = new ArrayList<>();
+
+        try (PostingJournal journal = PostingJournal.open(folder.newFile("journal").toPath(), SyncPolicy.none())) {
+
+            ExecutorService submitter = Executors.newSingleThreadExecutor();
+
+            try {
+                Future<List<CompletableFuture<Transaction>>> submitted = submitter.submit(() -> {
+
+                    Random random = new Random(7);
+
+                    List<CompletableFuture<Transaction>> posted = new ArrayList<>();
+
+                    for (int i = 0; i < TRANSFERS_PER_SUBMITTER; i++) {
+
+                        Transaction transfer = getTransaction("Transfer " + i, on(2018, 1 + random.nextInt(12), 1 + random.nextInt(28)), KES, journal);
+                        transfer.addEntry(DEBIT, shilling(100), chart.get(random.nextInt(ACCOUNTS)), details("Transfer in"));
+                        transfer.addEntry(CREDIT, shilling(100), chart.get(random.nextInt(ACCOUNTS)), details("Transfer out"));
+
+                        posted.add(engine.submit(transfer));
+                    }
+
+                    return posted;
+                });
+
+                while (!submitted.isDone() && snapshots.size() < 20) {
+
+                    Path file = folder.newFile().toPath();
+
+                    engine.snapshot(file, chart, journal);
+
+                    snapshots.add(file);
+                }
+
+                for (CompletableFuture<Transaction> posted : submitted.get(60, TimeUnit.SECONDS)) {
+                    posted.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                submitter.shutdownNow();
+            }
+        }
+
+        assertTrue(snapshots.size() > 0);
+
+        for (Path file : snapshots) {
+
+            LedgerSnapshot snapshot = LedgerSnapshot.read(file);
+
+            snapshot.replay(folder.getRoot().toPath().resolve("journal"));
+
+            for (Account account : chart) {
+
+                Account restored = snapshot.getAccounts().get(account.getAccountDetails().getNumber());
+
+                assertEquals(account.getAccountDetails().getNumber(), account.balanceMinorUnits(on(2018, 12, 31)), restored.balanceMinorUnits(on(2018, 12, 31)));
+            }
+        }
+    }
+
+    @Test
+    public void transactionRefusedOnOneShardIsPostedOnNone() throws Exception {
+
+        Account notYetOpen = new SimpleAccount(CREDIT, KES, accountDetails("Loans", "9000", on(2019, 1, 1)));
+
+        Account cash = chart.stream()
+            .filter(account -> engine.shardOf(account) != engine.shardOf(notYetOpen))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+
+        assertNotSame(engine.shardOf(cash), engine.shardOf(notYetOpen));
+
+        Transaction transaction = getTransaction("Loan disbursement", on(2018, 6, 1), KES);
+        transaction.addEntry(DEBIT, shilling(500), cash, details("Loan disbursement"));
+        transaction.addEntry(CREDIT, shilling(500), notYetOpen, details("Loan disbursement"));
+
+        try {
+            engine.submit(transaction).get(10, TimeUnit.SECONDS);
+            fail("The transaction was posted although one of its accounts was not yet open");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnableToPostException);
+        }
+
+        assertTrue(cash.getEntries().isEmpty());
+        assertTrue(notYetOpen.getEntries().isEmpty());
+    }
+
+    @Test
+    public void accountFailingUnexpectedlyRefusesTheTransactionOnEveryShard() throws Exception {
+
+        Account faulty = new AssignableCollectionAccount(CREDIT, KES, accountDetails("Faulty", "9001", on(2018, 1, 1)), Collections.emptyList()) {
+
+            @Override
+            public Currency getCurrency() {
+                return KES;
+            }
+
+            @Override
+            public void checkEntries(List<? extends Entry> entries) {
+                throw new IllegalStateException("The account is in no state to take entries");
+            }
+        };
+
+        Account cash = chart.stream()
+            .filter(account -> engine.shardOf(account) != engine.shardOf(faulty))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+
+        Transaction transaction = getTransaction("Loan disbursement", on(2018, 6, 1), KES);
+        transaction.addEntry(DEBIT, shilling(500), cash, details("Loan disbursement"));
+        transaction.addEntry(CREDIT, shilling(500), faulty, details("Loan disbursement"));
+
+        try {
+            engine.submit(transaction).get(10, TimeUnit.SECONDS);
+            fail("The transaction was posted although one of its accounts failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnableToPostException);
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+
+        // the healthy account is not left reserved
+        assertEquals(shilling(0), engine.closePeriod(cash, on(2018, 6, 30)).get(10, TimeUnit.SECONDS).getAmount());
+        assertTrue(cash.getEntries().isEmpty());
+    }
+
+    @Test
+    public void periodIsClosedOnTheShardOwningTheAccount() throws Exception {
+
+        Account cash = chart.get(0);
+        Account sales = chart.get(1);
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 3, 15), KES);
+        sale.addEntry(DEBIT, shilling(250), cash, details("Cash sale"));
+        sale.addEntry(CREDIT, shilling(250), sales, details("Cash sale"));
+
+        engine.submit(sale).get(10, TimeUnit.SECONDS);
+
+        assertEquals(shilling(250), engine.closePeriod(cash, on(2018, 3, 31)).get(10, TimeUnit.SECONDS).getAmount());
+
+        Transaction lateSale = getTransaction("Late cash sale", on(2018, 3, 20), KES);
+        lateSale.addEntry(DEBIT, shilling(50), cash, details("Cash sale"));
+        lateSale.addEntry(CREDIT, shilling(50), sales, details("Cash sale"));
+
+        try {
+            engine.submit(lateSale).get(10, TimeUnit.SECONDS);
+            fail("The transaction was posted into a closed period");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnableToPostException);
+        }
+
+        try {
+            engine.closePeriod(cash, on(2018, 2, 28)).get(10, TimeUnit.SECONDS);
+            fail("A period was closed before the one already closed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UntimelyBookingDateException);
+        }
+
+        assertEquals(1, cash.getEntries().size());
+        assertEquals(1, sales.getEntries().size());
+    }
+
+    @Test
+    public void singleShardPostsEveryTransactionItself() throws Exception {
+
+        try (PostingEngine single = PostingEngine.start(1)) {
+
+            assertEquals(1, single.getShardCount());
+            assertSame(single.shardOf(chart.get(0)), single.shardOf(chart.get(1)));
+
+            Transaction sale = getTransaction("Cash sale", on(2018, 3, 15), KES);
+            sale.addEntry(DEBIT, shilling(250), chart.get(0), details("Cash sale"));
+            sale.addEntry(CREDIT, shilling(250), chart.get(1), details("Cash sale"));
+
+            assertSame(sale, single.submit(sale).get(10, TimeUnit.SECONDS));
+            assertEquals(1, chart.get(0).getEntries().size());
+            assertTrue(single.trialBalance(chart, on(2018, 12, 31)).isBalanced());
+        }
+    }
+
+    @Test
+    public void shardsDoNotWaitOutTheJournalSync() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        ControlledChannel channel = ControlledChannel.open(file);
+
+        try (PostingEngine single = PostingEngine.start(1);
+             PostingJournal journal = channel.journal(file, SyncPolicy.groupCommit())) {
+
+            List<CompletableFuture<Transaction>> posted = new ArrayList<>();
+
+            channel.holdForces();
+
+            try {
+                for (int i = 0; i < 4; i++) {
+
+                    Transaction sale = getTransaction("Cash sale", on(2018, 3, 15), KES, journal);
+                    sale.addEntry(DEBIT, shilling(250), chart.get(0), details("Cash sale"));
+                    sale.addEntry(CREDIT, shilling(250), chart.get(1), details("Cash sale"));
+
+                    posted.add(single.submit(sale));
+                }
+
+                // a shard waiting for each record to be forced out would have written only the first
+                ControlledChannel.awaitSize(journal, 4);
+
+            } finally {
+                channel.releaseForces();
+            }
+
+            CompletableFuture.allOf(posted.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(4, chart.get(0).getEntries().size());
+    }
+
+    @Test
+    public void whatIsChainedOnAFutureCanUseTheEngine() throws Exception {
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 3, 15), KES);
+        sale.addEntry(DEBIT, shilling(250), chart.get(0), details("Cash sale"));
+        sale.addEntry(CREDIT, shilling(250), chart.get(1), details("Cash sale"));
+
+        // the trial balance waits on every shard, which it could not do from one of them
+        CompletableFuture<TrialBalance> trialBalance = engine.submit(sale).thenApply(posted -> {
+            try {
+                return engine.trialBalance(chart, on(2018, 12, 31));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        assertTrue(trialBalance.get(10, TimeUnit.SECONDS).isBalanced());
+    }
+
+    @Test
+    public void workIsRefusedOnceClosed() throws Exception {
+
+        engine.close();
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 3, 15), KES);
+        sale.addEntry(DEBIT, shilling(250), chart.get(0), details("Cash sale"));
+        sale.addEntry(CREDIT, shilling(250), chart.get(1), details("Cash sale"));
+
+        try {
+            engine.submit(sale).get(10, TimeUnit.SECONDS);
+            fail("A transaction was taken by a closed engine");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        try {
+            engine.closePeriod(chart.get(0), on(2018, 3, 31)).get(10, TimeUnit.SECONDS);
+            fail("A period was closed by a closed engine");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        try {
+            engine.trialBalance(chart, on(2018, 12, 31));
+            fail("A trial balance was taken by a closed engine");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        assertTrue(chart.get(0).getEntries().isEmpty());
+    }
+
+    @Test
+    public void transactionsOtherThanSimpleOnesAreRefused() throws Exception {
+
+        Transaction other = new Transaction() {
+
+            @Override
+            public void addEntry(AccountSide accountSide, Cash amount, Account account, EntryDetails details) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void post() {
+                fail("A transaction the shards cannot see into was posted around them");
+            }
+
+            @Override
+            public Set<Entry> getEntries() {
+                return Collections.emptySet();
+            }
+        };
+
+        try {
+            engine.submit(other).get(10, TimeUnit.SECONDS);
+            fail("A transaction the shards cannot see into was taken");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnableToPostException);
+        }
+    }
+}
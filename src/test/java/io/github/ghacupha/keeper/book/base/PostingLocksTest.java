@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.TrialBalance;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PostingLocksTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int ACCOUNTS = 24;
+
+    private static final int POSTERS = 4;
+
+    private static final int TRANSFERS_PER_POSTER = 2000;
+
+    private final List<Account> chart = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+
+            AccountDetails accountDetails = accountDetails("Account " + i, String.valueOf(3000 + i), on(2018, 1, 1));
+
+            chart.add(i % 2 == 0 ? new SimpleAccount(DEBIT, KES, accountDetails) : new ColumnarAccount(DEBIT, KES, accountDetails));
+        }
+    }
+
+    @Test
+    public void transactionIsPostedToAllOfItsAccountsOrNone() throws Exception {
+
+        Account cash = chart.get(0);
+        Account suspense = chart.get(1);
+        Account notYetOpen = new SimpleAccount(CREDIT, KES, accountDetails("Loans", "9000", on(2019, 1, 1)));
+
+        Transaction transaction = getTransaction("Loan disbursement", on(2018, 6, 1), KES);
+        transaction.addEntry(DEBIT, shilling(500), cash, details("Loan disbursement"));
+        transaction.addEntry(DEBIT, shilling(20), suspense, details("Loan fee"));
+        transaction.addEntry(CREDIT, shilling(520), notYetOpen, details("Loan disbursement"));
+
+        try {
+            transaction.post();
+            fail("The transaction was posted although one of its accounts was not yet open");
+        } catch (UnableToPostException e) {
+            // expected
+        }
+
+        assertTrue(cash.getEntries().isEmpty());
+        assertTrue(suspense.getEntries().isEmpty());
+        assertTrue(notYetOpen.getEntries().isEmpty());
+    }
+
+    @Test
+    public void trialBalanceNeverCatchesATransactionHalfPosted() throws Exception {
+
+        postTransfersWhileTakingTrialBalances();
+    }
+
+    @Test
+    public void trialBalanceNeverCatchesATransactionHalfPostedToAHotAccount() throws Exception {
+
+        // every fourth account takes a leg of many transactions at once
+        for (int i = 0; i < ACCOUNTS; i += 4) {
+            chart.set(i, new HotAccount(DEBIT, KES, chart.get(i).getAccountDetails()));
+        }
+
+        postTransfersWhileTakingTrialBalances();
+    }
+
+    private void postTransfersWhileTakingTrialBalances() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(POSTERS + 1);
+
+        AtomicBoolean posting = new AtomicBoolean(true);
+
+        try {
+            Future<Integer> trialBalances = executor.submit(() -> {
+
+                int taken = 0;
+
+                while (posting.get()) {
+
+                    TrialBalance trialBalance = TrialBalance.of(chart, on(2018, 12, 31));
+
+                    if (!trialBalance.isBalanced()) {
+                        throw new AssertionError("Trial balance out of balance : " + trialBalance);
+                    }
+
+                    taken++;
+                }
+
+                return taken;
+            });
+
+            List<Future<?>> posters = new ArrayList<>();
+
+            for (int poster = 0; poster < POSTERS; poster++) {
+
+                Random random = new Random(poster);
+
+                posters.add(executor.submit(() -> {
+
+                    for (int i = 0; i < TRANSFERS_PER_POSTER; i++) {
+
+                        // three legs across accounts picked at random, so that postings take their locks over
+                        // overlapping accounts in every order
+                        Account from = chart.get(random.nextInt(ACCOUNTS));
+                        Account to = chart.get(random.nextInt(ACCOUNTS));
+                        Account fees = chart.get(random.nextInt(ACCOUNTS));
+
+                        Transaction transfer = getTransaction("Transfer", on(2018, 1 + random.nextInt(12), 1 + random.nextInt(28)), KES);
+                        transfer.addEntry(DEBIT, shilling(100), to, details("Transfer in"));
+                        transfer.addEntry(DEBIT, shilling(1), fees, details("Transfer fee"));
+                        transfer.addEntry(CREDIT, shilling(101), from, details("Transfer out"));
+                        transfer.post();
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<?> poster : posters) {
+                poster.get(60, TimeUnit.SECONDS);
+            }
+
+            posting.set(false);
+
+            assertTrue(trialBalances.get(60, TimeUnit.SECONDS) > 0);
+
+        } finally {
+            posting.set(false);
+            executor.shutdownNow();
+        }
+
+        int entries = 0;
+
+        for (Account account : chart) {
+            entries += account.getEntries().size();
+        }
+
+        assertEquals(POSTERS * TRANSFERS_PER_POSTER * 3, entries);
+        assertTrue(TrialBalance.of(chart, on(2018, 12, 31)).isBalanced());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void stripesAreTakenInOneOrder() throws Exception {
+
+        Account account = chart.get(0);
+
+        assertEquals(PostingLocks.stripeOf(account), PostingLocks.stripeOf(new SimpleAccount(CREDIT, KES, accountDetails("Copy", account.getAccountDetails().getNumber(), on(2018, 1, 1)))));
+
+        try (PostingLocks.Hold posting = PostingLocks.forPosting(chart)) {
+
+            // the locks are reentrant, so whoever is posting can also read the accounts
+            try (PostingLocks.Hold reading = PostingLocks.forReading(chart.subList(0, 3))) {
+                assertTrue(TrialBalance.of(chart, on(2018, 12, 31)).isBalanced());
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SimpleTransactionTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private Account cash;
+    private Account sales;
+    private Account vat;
+
+    @Before
+    public void setUp() {
+
+        cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+        vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "2100", on(2018, 1, 1)));
+    }
+
+    @Test
+    public void imbalanceIsKeptAsEntriesAreAdded() throws Exception {
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 3, 1), KES);
+
+        assertTrue(sale.isBalanced());
+
+        sale.addEntry(DEBIT, shilling(116.10), cash, details("Cash sale"));
+
+        assertEquals(11610, sale.imbalance());
+        assertFalse(sale.isBalanced());
+
+        sale.addEntry(CREDIT, shilling(100.09), sales, details("Cash sale"));
+
+        assertEquals(1601, sale.imbalance());
+
+        sale.addEntry(CREDIT, shilling(16.02), vat, details("VAT on cash sale"));
+
+        assertEquals(-1, sale.imbalance());
+        assertFalse(sale.isBalanced());
+
+        try {
+            sale.post();
+            fail("A transaction whose credits are more than its debits was posted");
+        } catch (UnableToPostException e) {
+            assertTrue(e.getMessage().startsWith("The credits are more than debits"));
+        }
+
+        sale.addEntry(DEBIT, shilling(0.01), cash, details("Rounding"));
+
+        assertTrue(sale.isBalanced());
+
+        sale.post();
+
+        assertEquals(11611, cash.balanceMinorUnits(on(2018, 3, 31)));
+    }
+
+    @Test
+    public void totalsAgreeWithTheEntries() throws Exception {
+
+        Transaction payroll = getTransaction("Payroll", on(2018, 3, 31), KES);
+
+        for (int i = 0; i < 1000; i++) {
+            payroll.addEntry(i % 3 == 0 ? DEBIT : CREDIT, shilling(i * 0.37), i % 2 == 0 ? cash : sales, details("Payslip " + i));
+        }
+
+        long imbalance = 0;
+
+        for (Entry entry : payroll.getEntries()) {
+            imbalance += entry.getAccountSide() == DEBIT ? entry.getAmountMinorUnits() : -entry.getAmountMinorUnits();
+        }
+
+        assertEquals(imbalance, payroll.imbalance());
+    }
+
+    @Test
+    public void thousandsOfPostingsCanBeInFlight() throws Exception {
+
+        List<CompletableFuture<Transaction>> inFlight = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+
+            Transaction sale = getTransaction("Cash sale", on(2018, 1 + i % 12, 1 + i % 28), KES);
+            sale.addEntry(DEBIT, shilling(116), cash, details("Cash sale"));
+            sale.addEntry(CREDIT, shilling(100), sales, details("Cash sale"));
+            sale.addEntry(CREDIT, shilling(16), vat, details("VAT on cash sale"));
+
+            inFlight.add(sale.postAsync());
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+
+        assertEquals(5000 * 11600, cash.balanceMinorUnits(on(2018, 12, 31)));
+        assertEquals(5000, vat.getEntries().size());
+    }
+
+    @Test
+    public void refusedPostingCompletesExceptionally() throws Exception {
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 3, 1), KES);
+        sale.addEntry(DEBIT, shilling(116), cash, details("Cash sale"));
+        sale.addEntry(CREDIT, shilling(100), sales, details("Cash sale"));
+
+        try {
+            sale.postAsync().get(10, TimeUnit.SECONDS);
+            fail("A transaction whose debits are more than its credits was posted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof UnableToPostException);
+        }
+
+        assertTrue(cash.getEntries().isEmpty());
+    }
+
+    @Test
+    public void postingRunsOnTheExecutorGiven() throws Exception {
+
+        Transaction sale = getTransaction("Cash sale", on(2018, 3, 1), KES);
+        sale.addEntry(DEBIT, shilling(100), cash, details("Cash sale"));
+        sale.addEntry(CREDIT, shilling(100), sales, details("Cash sale"));
+
+        CompletableFuture<Transaction> posted = sale.postAsync(Runnable::run);
+
+        assertTrue(posted.isDone());
+        assertSame(sale, posted.get());
+        assertEquals(10000, cash.balanceMinorUnits(on(2018, 3, 31)));
+    }
+}
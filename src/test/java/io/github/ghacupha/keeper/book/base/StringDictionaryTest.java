@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Currency;
+import java.util.function.Predicate;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StringDictionaryTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private StringDictionary dictionary;
+
+    @Before
+    public void setUp() {
+
+        dictionary = new StringDictionary();
+
+        StringDictionary.setDefault(dictionary);
+    }
+
+    @After
+    public void tearDown() {
+
+        StringDictionary.setDefault(null);
+    }
+
+    @Test
+    public void narrationsAreKeptOnce() {
+
+        EntryDetails first = details("Reversal of Excess VAT");
+        EntryDetails second = details("Reversal of Excess VAT");
+        EntryDetails other = details("Billboards ltd inv 10");
+
+        assertEquals(2, dictionary.size());
+        assertEquals(first.getNarrationCode(), second.getNarrationCode());
+        assertEquals("Reversal of Excess VAT", second.getNarration());
+        assertEquals(first, second);
+        assertEquals(dictionary.codeOf("Billboards ltd inv 10"), other.getNarrationCode());
+    }
+
+    @Test
+    public void encodedDetailsEqualThoseMadeWithoutTheDictionary() {
+
+        EntryDetails encoded = details("Reversal of Excess VAT");
+
+        StringDictionary.setDefault(null);
+
+        EntryDetails plain = details("Reversal of Excess VAT");
+
+        assertEquals(StringDictionary.NO_CODE, plain.getNarrationCode());
+        assertEquals(plain, encoded);
+        assertEquals(plain.hashCode(), encoded.hashCode());
+    }
+
+    @Test
+    public void attributeValuesAreKeptOnce() throws Exception {
+
+        EntryDetails first = details("Billboards ltd inv 10");
+        first.setAttribute("supplier", new String("Billboards Ltd"));
+
+        EntryDetails second = details("Billboards ltd inv 11");
+        second.setAttribute("supplier", new String("Billboards Ltd"));
+
+        assertSame(first.getAttribute("supplier"), second.getAttribute("supplier"));
+    }
+
+    @Test
+    public void entriesAreFilteredByNarrationCode() throws Exception {
+
+        Account vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2018, 1, 1)));
+
+        for (int i = 0; i < 10; i++) {
+            vat.addEntry(new SimpleEntry(CREDIT, vat, shilling(16), on(2018, 1, 10), details("VAT for billBoards")));
+            vat.addEntry(new SimpleEntry(DEBIT, vat, shilling(1), on(2018, 1, 11), details("Reversal of Excess VAT")));
+        }
+
+        assertEquals(10, vat.getEntries().stream().filter(dictionary.narrationIs("Reversal of Excess VAT")).count());
+        assertEquals(0, vat.getEntries().stream().filter(dictionary.narrationIs("Never used")).count());
+    }
+
+    @Test
+    public void filterMadeBeforeTheNarrationIsEncodedFindsItsEntries() throws Exception {
+
+        Account vat = new SimpleAccount(CREDIT, KES, accountDetails("VAT", "5281", on(2018, 1, 1)));
+
+        Predicate<Entry> reversals = dictionary.narrationIs("Reversal of Excess VAT");
+
+        assertEquals(0, vat.getEntries().stream().filter(reversals).count());
+
+        for (int i = 0; i < 10; i++) {
+            vat.addEntry(new SimpleEntry(CREDIT, vat, shilling(16), on(2018, 1, 10), details("VAT for billBoards")));
+            vat.addEntry(new SimpleEntry(DEBIT, vat, shilling(1), on(2018, 1, 11), details("Reversal of Excess VAT")));
+        }
+
+        assertEquals(10, vat.getEntries().stream().filter(reversals).count());
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * File channel under a {@link PostingJournal} whose writes can be made to tear half way, and whose forces can be made
+ * to fail or held until let go, so that tests can put the journal in the state they are after
+ *
+ * @author edwin.njeru
+ */
+public final class ControlledChannel extends FileChannel {
+
+    private final FileChannel channel;
+
+    private volatile boolean failWrites;
+
+    private volatile boolean failForces;
+
+    // forces wait on the gate while there is one
+    private volatile CountDownLatch gate;
+
+    private final AtomicInteger forces = new AtomicInteger();
+
+    private ControlledChannel(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param file {@link Path} of the journal file, created if it does not exist
+     * @return {@link ControlledChannel} over the file, whose writes and forces go through until told otherwise
+     * @throws IOException if the file cannot be opened
+     */
+    public static ControlledChannel open(Path file) throws IOException {
+
+        return new ControlledChannel(FileChannel.open(file, CREATE, READ, WRITE));
+    }
+
+    /**
+     * @param file {@link Path} of the journal file this channel was opened over
+     * @param syncPolicy {@link SyncPolicy} of the journal
+     * @return {@link PostingJournal} written and forced through this channel
+     * @throws IOException if the journal cannot be read back
+     */
+    public PostingJournal journal(Path file, SyncPolicy syncPolicy) throws IOException {
+
+        return PostingJournal.open(file, syncPolicy, this);
+    }
+
+    /**
+     * @param fail true for writes to tear half way through the bytes given and fail
+     */
+    public void failWrites(boolean fail) {
+        failWrites = fail;
+    }
+
+    /**
+     * @param fail true for forces to fail
+     */
+    public void failForces(boolean fail) {
+        failForces = fail;
+    }
+
+    /**
+     * Keeps forces from finishing until {@link #releaseForces()}
+     */
+    public void holdForces() {
+        gate = new CountDownLatch(1);
+    }
+
+    /**
+     * Lets the forces held since {@link #holdForces()} finish, and those after them go straight through
+     */
+    public void releaseForces() {
+
+        CountDownLatch held = gate;
+
+        gate = null;
+
+        if (held != null) {
+            held.countDown();
+        }
+    }
+
+    /**
+     * @return Number of forces started so far
+     */
+    public int forces() {
+        return forces.get();
+    }
+
+    /**
+     * Waits for the journal to be written up to the size given, which while forces are held shows that writers did
+     * not wait on them
+     *
+     * @param journal {@link PostingJournal} being written
+     * @param size Number of records to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void awaitSize(PostingJournal journal, long size) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (journal.size() < size) {
+
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Only " + journal.size() + " of " + size + " records were written");
+            }
+
+            Thread.sleep(1);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+
+        if (failWrites) {
+
+            ByteBuffer half = src.duplicate();
+            half.limit(src.position() + src.remaining() / 2);
+
+            int written = channel.write(half);
+            src.position(src.position() + written);
+
+            throw new IOException("No space left on device");
+        }
+
+        return channel.write(src);
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+
+        forces.incrementAndGet();
+
+        CountDownLatch held = gate;
+
+        if (held != null) {
+            try {
+                held.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while the force was held", e);
+            }
+        }
+
+        if (failForces) {
+            throw new IOException("Input/output error");
+        }
+
+        channel.force(metaData);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        return channel.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        return channel.read(dsts, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        return channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+        return channel.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        channel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+        channel.truncate(size);
+        return this;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        return channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+        return channel.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        return channel.read(dst, position);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        return channel.write(src, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        return channel.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        return channel.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        return channel.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        channel.close();
+    }
+}
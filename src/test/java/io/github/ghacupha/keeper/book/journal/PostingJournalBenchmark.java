@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.journal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends a record about the size of a three-entry transaction from many threads at once, with each of the
+ * {@link SyncPolicy} options. Per transaction syncing is bound by the device's sync latency, while under group commit
+ * each sync is shared by every thread which appended during the one before it.
+ * <pre>
+ *     mvn -Pbenchmark verify -Dbenchmark=PostingJournalBenchmark
+ * </pre>
+ *
+ * @author edwin.njeru
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class PostingJournalBenchmark {
+
+    @Param({"none", "groupCommit", "perTransaction"})
+    private String syncPolicy;
+
+    private Path file;
+
+    private PostingJournal journal;
+
+    private final byte[] record = new byte[160];
+
+    @Setup
+    public void setUp() throws IOException {
+
+        file = Files.createTempFile("posting-journal", ".log");
+
+        switch (syncPolicy) {
+            case "groupCommit":
+                journal = PostingJournal.open(file, SyncPolicy.groupCommit());
+                break;
+            case "perTransaction":
+                journal = PostingJournal.open(file, SyncPolicy.perTransaction());
+                break;
+            default:
+                journal = PostingJournal.open(file, SyncPolicy.none());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        journal.close();
+
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+
+        return journal.append(record);
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.journal;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.util.IndeterminatePostingException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PostingJournalTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsAreReadBackInOrder() throws Exception {
+
+        for (SyncPolicy syncPolicy : new SyncPolicy[]{SyncPolicy.none(), SyncPolicy.perTransaction(), SyncPolicy.groupCommit()}) {
+
+            Path file = folder.newFile().toPath();
+
+            try (PostingJournal journal = PostingJournal.open(file, syncPolicy)) {
+
+                for (int i = 1; i <= 10; i++) {
+                    assertEquals(i, journal.append(("record " + i).getBytes(StandardCharsets.UTF_8)));
+                }
+            }
+
+            List<String> records = new ArrayList<>();
+
+            assertEquals(10, PostingJournal.replay(file, payload -> records.add(StandardCharsets.UTF_8.decode(payload).toString())));
+            assertEquals("record 1", records.get(0));
+            assertEquals("record 10", records.get(9));
+        }
+    }
+
+    @Test
+    public void groupCommitSharesForcesAmongThreads() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        ControlledChannel channel = ControlledChannel.open(file);
+
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+
+        try (PostingJournal journal = channel.journal(file, SyncPolicy.groupCommit())) {
+
+            List<Future<Long>> appends = new ArrayList<>();
+
+            // the first append to wait leads a force which is held, while the others are written and follow it
+            channel.holdForces();
+
+            try {
+                for (int i = 0; i < 16; i++) {
+                    appends.add(threads.submit(() -> journal.append(new byte[32])));
+                }
+
+                ControlledChannel.awaitSize(journal, 16);
+
+            } finally {
+                channel.releaseForces();
+            }
+
+            for (Future<Long> append : appends) {
+                append.get(10, TimeUnit.SECONDS);
+            }
+
+            // the held force, and the one led after it for every record written meanwhile
+            assertTrue(channel.forces() <= 2);
+
+        } finally {
+            threads.shutdown();
+        }
+
+        assertEquals(16, PostingJournal.replay(file, payload -> { }));
+    }
+
+    @Test
+    public void lonePosterIsNotKeptWaitingForCompany() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        ControlledChannel channel = ControlledChannel.open(file);
+
+        try (PostingJournal journal = channel.journal(file, SyncPolicy.groupCommit())) {
+
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(i, journal.append(new byte[32]));
+                assertEquals(i, channel.forces());
+            }
+        }
+    }
+
+    @Test
+    public void tornRecordsAreCutOffWhenOpening() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        try (PostingJournal journal = PostingJournal.open(file, SyncPolicy.none())) {
+            journal.append(new byte[]{1, 2, 3});
+            journal.append(new byte[]{4, 5, 6});
+        }
+
+        // the last byte of the second record never made it
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (PostingJournal journal = PostingJournal.open(file, SyncPolicy.none())) {
+
+            assertEquals(1, journal.size());
+
+            journal.append(new byte[]{7});
+        }
+
+        List<Integer> firstBytes = new ArrayList<>();
+
+        PostingJournal.replay(file, payload -> firstBytes.add((int) payload.get(0)));
+
+        assertEquals(2, firstBytes.size());
+        assertEquals(7, (int) firstBytes.get(1));
+    }
+
+    @Test
+    public void transactionsAreJournaledWhenPosted() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        Account advertisement = new SimpleAccount(DEBIT, KES, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+        Account cheques = new SimpleAccount(CREDIT, KES, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+        try (PostingJournal journal = PostingJournal.open(file, SyncPolicy.perTransaction())) {
+
+            Transaction transaction = getTransaction("BillboardsPayment", on(2017, 11, 2), KES, journal);
+            transaction.addEntry(DEBIT, shilling(200.50), advertisement, details("Billboards ltd inv 10"));
+            transaction.addEntry(CREDIT, shilling(200.50), cheques, details("CHQ IFO Billboards Ltd"));
+            transaction.post();
+        }
+
+        List<String> entries = new ArrayList<>();
+
+        PostingJournal.replay(file, payload -> {
+
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+
+                assertEquals("BillboardsPayment", in.readUTF());
+                in.readInt();
+                assertEquals("KES", in.readUTF());
+
+                for (int count = in.readInt(); count > 0; count--) {
+                    entries.add(in.readBoolean() + " " + in.readLong() + " " + in.readUTF() + " " + in.readUTF());
+                }
+
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertEquals("true 20050 5280 Billboards ltd inv 10", entries.get(0));
+        assertEquals("false 20050 5282 CHQ IFO Billboards Ltd", entries.get(1));
+    }
+
+    @Test
+    public void transactionsOnOneAccountShareAGroupCommit() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        ControlledChannel channel = ControlledChannel.open(file);
+
+        Account cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+
+        try (PostingJournal journal = channel.journal(file, SyncPolicy.groupCommit())) {
+
+            List<Future<?>> posted = new ArrayList<>();
+
+            channel.holdForces();
+
+            try {
+                for (int i = 0; i < 2; i++) {
+                    posted.add(threads.submit(() -> {
+
+                        Transaction sale = getTransaction("Cash sale", on(2018, 3, 1), KES, journal);
+                        sale.addEntry(DEBIT, shilling(100), cash, details("Cash sale"));
+                        sale.addEntry(CREDIT, shilling(100), sales, details("Cash sale"));
+                        sale.post();
+
+                        return null;
+                    }));
+                }
+
+                // had the first sale kept the cash account's locks while its force is held, the second could not
+                // have been written
+                ControlledChannel.awaitSize(journal, 2);
+
+            } finally {
+                channel.releaseForces();
+            }
+
+            for (Future<?> sale : posted) {
+                sale.get(10, TimeUnit.SECONDS);
+            }
+
+            assertTrue(channel.forces() <= 2);
+
+        } finally {
+            threads.shutdown();
+        }
+
+        assertEquals(2, cash.getEntries().size());
+    }
+
+    @Test
+    public void recordTornByAFailedWriteIsCutOff() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        ControlledChannel channel = ControlledChannel.open(file);
+
+        try (PostingJournal journal = channel.journal(file, SyncPolicy.perTransaction())) {
+
+            journal.append(new byte[]{1});
+
+            channel.failWrites(true);
+
+            try {
+                journal.append(new byte[]{2, 2, 2, 2});
+                fail("A record was appended although it could not be written");
+            } catch (IOException e) {
+                // expected
+            }
+
+            channel.failWrites(false);
+
+            assertEquals(2, journal.append(new byte[]{3}));
+        }
+
+        List<Integer> firstBytes = new ArrayList<>();
+
+        assertEquals(2, PostingJournal.replay(file, payload -> firstBytes.add((int) payload.get(0))));
+        assertEquals(3, (int) firstBytes.get(1));
+    }
+
+    @Test
+    public void postingWhoseJournalCannotBeForcedIsIndeterminate() throws Exception {
+
+        Path file = folder.newFile().toPath();
+
+        ControlledChannel channel = ControlledChannel.open(file);
+
+        Account cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+
+        try (PostingJournal journal = channel.journal(file, SyncPolicy.perTransaction())) {
+
+            channel.failForces(true);
+
+            Transaction sale = getTransaction("Cash sale", on(2018, 3, 1), KES, journal);
+            sale.addEntry(DEBIT, shilling(100), cash, details("Cash sale"));
+            sale.addEntry(CREDIT, shilling(100), sales, details("Cash sale"));
+
+            try {
+                sale.post();
+                fail("A posting whose journal could not be forced out was reported durable");
+            } catch (IndeterminatePostingException e) {
+                // expected
+            }
+
+            // the entries are posted, as they would be once the journal is replayed should the record have made it
+            assertEquals(1, cash.getEntries().size());
+
+            channel.failForces(false);
+
+            // the journal has failed for good
+            try {
+                journal.write(new byte[]{1});
+                fail("A failed journal took another record");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        assertEquals(1, PostingJournal.replay(file, payload -> { }));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedAppendLogTest {
+
+    @Test
+    public void iteratorsGoOverASnapshot() {
+
+        ChunkedAppendLog<Integer> log = new ChunkedAppendLog<>();
+
+        for (int i = 0; i < ChunkedAppendLog.CHUNK_SIZE; i++) {
+            log.add(i);
+        }
+
+        Iterator<Integer> iterator = log.iterator();
+        ListIterator<Integer> fromTheEnd = log.listIterator(ChunkedAppendLog.CHUNK_SIZE - 1);
+
+        // spills over into a second chunk
+        log.add(-1);
+
+        int count = 0;
+
+        while (iterator.hasNext()) {
+            assertEquals(count, (int) iterator.next());
+            count++;
+        }
+
+        assertEquals(ChunkedAppendLog.CHUNK_SIZE, count);
+        assertEquals(ChunkedAppendLog.CHUNK_SIZE - 1, (int) fromTheEnd.next());
+        assertFalse(fromTheEnd.hasNext());
+        assertEquals(ChunkedAppendLog.CHUNK_SIZE + 1, log.size());
+        assertEquals(-1, (int) log.get(ChunkedAppendLog.CHUNK_SIZE));
+    }
+
+    @Test
+    public void concurrentAddsAreAllPublishedWithoutGaps() throws Exception {
+
+        ChunkedAppendLog<Long> log = new ChunkedAppendLog<>();
+
+        int threads = 8;
+        int adds = 50_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+
+            for (int t = 0; t < threads; t++) {
+
+                long thread = t;
+
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (long i = 0; i < adds; i++) {
+                        log.add(thread * adds + i);
+                    }
+                    return null;
+                }));
+            }
+
+            // every element a reader can see must be there
+            Future<Boolean> reader = executor.submit(() -> {
+                start.await();
+                int seen = 0;
+                while (seen < threads * adds) {
+                    ListIterator<Long> published = log.listIterator(seen);
+                    while (published.hasNext()) {
+                        if (published.next() == null) {
+                            return false;
+                        }
+                        seen++;
+                    }
+                }
+                return true;
+            });
+
+            start.countDown();
+
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+
+            assertTrue(reader.get());
+
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * adds, log.size());
+
+        long expected = (long) threads * adds * (threads * adds - 1) / 2;
+
+        assertEquals(expected, log.stream().mapToLong(Long::longValue).sum());
+        assertEquals(expected, log.parallelStream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void elementsCannotBeRemoved() {
+
+        ChunkedAppendLog<String> log = new ChunkedAppendLog<>();
+
+        log.add("entry");
+
+        log.remove(0);
+    }
+}
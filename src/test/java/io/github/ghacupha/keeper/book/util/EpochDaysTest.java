@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.time.point.TimePoint;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpochDaysTest {
+
+    @Test
+    public void everyDayOfTheSupportedYearsAgreesWithTheCalendar() throws Exception {
+
+        for (LocalDate date = LocalDate.of(0, 1, 1); date.getYear() < 10000; date = date.plusDays(1)) {
+
+            TimePoint timePoint = on(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+
+            assertEquals(date.toEpochDay(), EpochDays.of(timePoint));
+        }
+    }
+
+    @Test
+    public void daysAreTurnedBackIntoDates() throws Exception {
+
+        assertEquals(on(2018, 2, 28), EpochDays.toTimePoint(EpochDays.of(on(2018, 2, 28))));
+        assertEquals(on(1969, 12, 31), EpochDays.toTimePoint(-1));
+    }
+
+    @Test
+    public void datesBeyondTheYear9999AreNotSupported() throws Exception {
+
+        assertTrue(EpochDays.supports(on(9999, 12, 31)));
+        assertFalse(EpochDays.supports(on(10000, 1, 1)));
+        assertFalse(EpochDays.supports(on(-1, 12, 31)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedDatesAreNotConverted() throws Exception {
+
+        EpochDays.of(on(10000, 1, 1));
+    }
+}
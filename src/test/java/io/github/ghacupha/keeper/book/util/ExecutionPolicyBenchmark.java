@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountBalance;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.base.AccountDetails;
+import io.github.ghacupha.time.point.TimePoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+
+/**
+ * Posts the same three-entry transaction over and over, under an {@link ExecutionPolicy} that always goes parallel in
+ * the common pool (which is how posting worked before the policy), the default adaptive policy, and an always parallel
+ * policy with a dedicated pool. The accounts only count the entries posted into them so that nothing but the
+ * transaction's own work is measured.
+ * <pre>
+ *     mvn -Pbenchmark verify -Dbenchmark=ExecutionPolicyBenchmark
+ * </pre>
+ *
+ * @author edwin.njeru
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ExecutionPolicyBenchmark {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Param({"commonPoolParallel", "adaptive", "dedicatedPoolParallel"})
+    private String policy;
+
+    private ForkJoinPool pool;
+
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        switch (policy) {
+            case "commonPoolParallel":
+                ExecutionPolicy.setDefault(ExecutionPolicy.sequentialBelow(0));
+                break;
+            case "dedicatedPoolParallel":
+                pool = new ForkJoinPool();
+                ExecutionPolicy.setDefault(ExecutionPolicy.sequentialBelow(0, pool));
+                break;
+            default:
+                ExecutionPolicy.setDefault(ExecutionPolicy.sequentialBelow(ExecutionPolicy.DEFAULT_PARALLEL_THRESHOLD));
+        }
+
+        Account advertisement = new CountingAccount(DEBIT, accountDetails("Advertisements", "5280", on(2017, 3, 31)));
+        Account vat = new CountingAccount(CREDIT, accountDetails("VAT", "5281", on(2017, 3, 31)));
+        Account cheques = new CountingAccount(CREDIT, accountDetails("Cheque", "5282", on(2017, 3, 31)));
+
+        transaction = getTransaction("BillboardsPayment", on(2017, 11, 2), KES);
+        transaction.addEntry(DEBIT, shilling(200), advertisement, details("Billboards ltd inv 10"));
+        transaction.addEntry(CREDIT, shilling(32), vat, details("VAT for billBoards"));
+        transaction.addEntry(CREDIT, shilling(168), cheques, details("CHQ IFO Billboards Ltd"));
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        ExecutionPolicy.setDefault(ExecutionPolicy.sequentialBelow(ExecutionPolicy.DEFAULT_PARALLEL_THRESHOLD));
+
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void postThreeEntryTransaction() throws Exception {
+
+        transaction.post();
+    }
+
+    /**
+     * Account which does nothing with its entries but count them
+     */
+    private static final class CountingAccount implements Account {
+
+        private final AtomicLong entryCount = new AtomicLong();
+
+        private final AccountSide accountSide;
+
+        private final AccountDetails accountDetails;
+
+        CountingAccount(AccountSide accountSide, AccountDetails accountDetails) {
+            this.accountSide = accountSide;
+            this.accountDetails = accountDetails;
+        }
+
+        @Override
+        public void addEntry(Entry entry) {
+            entryCount.incrementAndGet();
+        }
+
+        @Override
+        public AccountBalance closePeriod(TimePoint closingDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccountBalance balance(TimePoint asAt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AccountBalance balance(int... asAt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Currency getCurrency() {
+            return KES;
+        }
+
+        @Override
+        public TimePoint getOpeningDate() {
+            return on(2017, 3, 31);
+        }
+
+        @Override
+        public AccountSide getAccountSide() {
+            return accountSide;
+        }
+
+        @Override
+        public List<Entry> getEntries() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public AccountDetails getAccountDetails() {
+            return accountDetails;
+        }
+
+        @Override
+        public void setAccountSide(AccountSide accountSide) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
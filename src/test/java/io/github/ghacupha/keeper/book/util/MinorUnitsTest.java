@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import org.junit.Test;
+
+import java.util.Currency;
+
+import static io.github.ghacupha.cash.HardCash.dollar;
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountBalance.newBalance;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleAccount.makeAccount;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+
+public class MinorUnitsTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Test
+    public void cashIsConvertedToMinorUnitsAndBack() throws Exception {
+
+        assertEquals(10650, MinorUnits.of(shilling(106.50)));
+        assertEquals(-3208, MinorUnits.of(dollar(-32.08)));
+        assertEquals(shilling(106.50), MinorUnits.toCash(10650, KES));
+    }
+
+    @Test
+    public void amountsUpToTheLimitAreConvertedExactly() throws Exception {
+
+        Currency dinar = Currency.getInstance("BHD");
+
+        for (Currency currency : new Currency[]{KES, dinar, Currency.getInstance("JPY")}) {
+
+            assertEquals(MinorUnits.MAX_CASH, MinorUnits.of(MinorUnits.toCash(MinorUnits.MAX_CASH, currency)));
+            assertEquals(-MinorUnits.MAX_CASH + 1, MinorUnits.of(MinorUnits.toCash(-MinorUnits.MAX_CASH + 1, currency)));
+        }
+    }
+
+    // a double would round the amount to a neighbouring one without saying so
+    @Test(expected = ArithmeticException.class)
+    public void amountsPastTheLimitAreRefused() throws Exception {
+
+        MinorUnits.toCash((1L << 53) + 1, KES);
+    }
+
+    @Test
+    public void manySmallEntriesBalanceExactly() throws Exception {
+
+        Account tills = makeAccount(DEBIT, KES, accountDetails("Tills", "1100", on(2018, 1, 1)));
+        Account sales = makeAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+
+        Transaction takings = getTransaction("Takings", on(2018, 1, 2), KES);
+
+        // ten cents a thousand times do not add up to a hundred shillings in double arithmetic
+        for (int i = 0; i < 1000; i++) {
+            takings.addEntry(DEBIT, shilling(0.10), tills, details("Till receipt " + i));
+        }
+        takings.addEntry(CREDIT, shilling(100), sales, details("Daily takings"));
+
+        takings.post();
+
+        assertEquals(newBalance(shilling(100), DEBIT), tills.balance(2018, 1, 2));
+        assertEquals(newBalance(shilling(100), CREDIT), sales.balance(2018, 1, 2));
+    }
+}
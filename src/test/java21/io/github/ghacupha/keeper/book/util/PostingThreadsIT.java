@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.util;
+
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.base.SimpleAccount;
+import io.github.ghacupha.keeper.book.journal.PostingJournal;
+import io.github.ghacupha.keeper.book.journal.SyncPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the multi-release jar on JDK 21, which is the only way the Java 21 {@link PostingThreads} is picked
+ */
+public class PostingThreadsIT {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void postingsRunOnVirtualThreads() throws Exception {
+
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+
+        PostingThreads.newExecutor(1).execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+
+        assertTrue(virtual.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void thousandsOfPostingsWaitOnOneGroupCommit() throws Exception {
+
+        Executor executor = PostingThreads.newExecutor(1);
+
+        Account cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        Account sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+
+        try (PostingJournal journal = PostingJournal.open(folder.newFile().toPath(), SyncPolicy.groupCommit())) {
+
+            List<CompletableFuture<Transaction>> inFlight = new ArrayList<>();
+
+            long start = System.nanoTime();
+
+            for (int i = 0; i < 10_000; i++) {
+
+                Transaction sale = getTransaction("Cash sale", on(2018, 3, 1), KES, journal);
+                sale.addEntry(DEBIT, shilling(100), cash, details("Cash sale"));
+                sale.addEntry(CREDIT, shilling(100), sales, details("Cash sale"));
+
+                inFlight.add(sale.postAsync(executor));
+            }
+
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+
+            // pinned carriers would have let only as many postings as there are processors wait on each commit
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+            assertEquals(10_000, journal.size());
+        }
+
+        assertEquals(10_000, cash.getEntries().size());
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2018 Edwin Njeru (mailnjeru@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.ghacupha.keeper.book.base;
+
+import io.github.ghacupha.cash.Cash;
+import io.github.ghacupha.keeper.book.api.Account;
+import io.github.ghacupha.keeper.book.api.Entry;
+import io.github.ghacupha.keeper.book.api.Transaction;
+import io.github.ghacupha.keeper.book.balance.AccountSide;
+import io.github.ghacupha.keeper.book.util.UnableToPostException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.ghacupha.cash.HardCash.shilling;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.CREDIT;
+import static io.github.ghacupha.keeper.book.balance.AccountSide.DEBIT;
+import static io.github.ghacupha.keeper.book.base.AccountDetails.accountDetails;
+import static io.github.ghacupha.keeper.book.base.EntryDetails.details;
+import static io.github.ghacupha.keeper.book.base.SimpleTransaction.getTransaction;
+import static io.github.ghacupha.time.point.SimpleDate.on;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PostingProcessorTest {
+
+    private static final Currency KES = Currency.getInstance("KES");
+
+    private static final int BATCH_SIZE = 16;
+
+    private Account cash;
+    private Account sales;
+
+    @Before
+    public void setUp() {
+
+        cash = new SimpleAccount(DEBIT, KES, accountDetails("Cash", "1000", on(2018, 1, 1)));
+        sales = new SimpleAccount(CREDIT, KES, accountDetails("Sales", "4000", on(2018, 1, 1)));
+    }
+
+    @Test
+    public void everyTransactionIsPostedOrRefusedInItsResult() throws Exception {
+
+        CardEvents events = new CardEvents(2000);
+        Results results = new Results(Long.MAX_VALUE);
+
+        PostingProcessor processor = PostingProcessor.withBatchesOf(BATCH_SIZE);
+        processor.subscribe(results);
+
+        events.subscribe(processor);
+        events.publish();
+
+        assertTrue(results.completed.await(60, TimeUnit.SECONDS));
+
+        assertEquals(2000, results.received.size());
+        assertTrue(events.mostDemanded.get() <= BATCH_SIZE);
+
+        long refused = results.received.stream().filter(result -> !result.isPosted()).count();
+
+        assertEquals(20, refused);
+        assertTrue(results.received.stream().filter(result -> !result.isPosted()).allMatch(result -> result.getRefusal() instanceof UnableToPostException));
+        assertEquals(1980, cash.getEntries().size());
+        assertEquals(1980 * 10000, cash.balanceMinorUnits(on(2018, 12, 31)));
+    }
+
+    @Test
+    public void slowSubscriberHoldsBackUpstream() throws Exception {
+
+        CardEvents events = new CardEvents(10_000);
+        Results results = new Results(0);
+
+        PostingProcessor processor = PostingProcessor.withBatchesOf(BATCH_SIZE);
+        processor.subscribe(results);
+
+        events.subscribe(processor);
+
+        Thread upstream = new Thread(events::publish, "card-events");
+        upstream.setDaemon(true);
+        upstream.start();
+
+        // the processor posts until the subscriber's buffer is full, then stops requesting
+        upstream.join(500);
+
+        assertTrue(upstream.isAlive());
+        assertTrue(events.published.get() <= 2 * BATCH_SIZE);
+        assertTrue(results.received.isEmpty());
+
+        results.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(results.completed.await(60, TimeUnit.SECONDS));
+        assertEquals(10_000, results.received.size());
+        assertFalse(upstream.isAlive());
+    }
+
+    @Test
+    public void runtimeFailureOnPostingIsReportedWithoutStallingTheStream() throws Exception {
+
+        CardEvents events = new CardEvents(100);
+        events.failing = 7;
+
+        Results results = new Results(Long.MAX_VALUE);
+
+        PostingProcessor processor = PostingProcessor.withBatchesOf(BATCH_SIZE);
+        processor.subscribe(results);
+
+        events.subscribe(processor);
+        events.publish();
+
+        assertTrue(results.completed.await(60, TimeUnit.SECONDS));
+        assertEquals(100, results.received.size());
+
+        PostingResult failed = results.received.get(7);
+
+        assertFalse(failed.isPosted());
+        assertTrue(failed.getRefusal() instanceof IllegalStateException);
+        // the hundredth sale does not balance
+        assertEquals(98, results.received.stream().filter(PostingResult::isPosted).count());
+    }
+
+    /*
+     * Publishes card sales, every hundredth of which does not balance, for as many as are requested
+     */
+    private final class CardEvents implements Flow.Publisher<Transaction>, Flow.Subscription {
+
+        private final int count;
+
+        private final AtomicInteger published = new AtomicInteger();
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicLong mostDemanded = new AtomicLong();
+
+        private Flow.Subscriber<? super Transaction> subscriber;
+
+        // the one sale whose posting throws, if any
+        private int failing = -1;
+
+        private CardEvents(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Transaction> subscriber) {
+
+            this.subscriber = subscriber;
+
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+
+            mostDemanded.accumulateAndGet(demand.addAndGet(n), Math::max);
+
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            demand.set(Long.MIN_VALUE);
+        }
+
+        private void publish() {
+
+            while (published.get() < count) {
+
+                synchronized (this) {
+                    while (demand.get() == 0) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+
+                if (demand.get() < 0) {
+                    return;
+                }
+
+                int i = published.getAndIncrement();
+
+                Transaction sale = i == failing ? new FailingSale() : getTransaction("Card sale", on(2018, 1 + i % 12, 1 + i % 28), KES);
+                try {
+                    sale.addEntry(DEBIT, shilling(i % 100 == 99 && i != failing ? 101 : 100), cash, details("Card sale"));
+                    sale.addEntry(CREDIT, shilling(100), sales, details("Card sale"));
+                } catch (Exception e) {
+                    subscriber.onError(e);
+                    return;
+                }
+
+                demand.decrementAndGet();
+
+                subscriber.onNext(sale);
+            }
+
+            subscriber.onComplete();
+        }
+    }
+
+    /*
+     * Sale whose posting fails at runtime, as it would on a failing journal
+     */
+    private static final class FailingSale implements Transaction {
+
+        @Override
+        public void addEntry(AccountSide accountSide, Cash amount, Account account, EntryDetails details) {
+        }
+
+        @Override
+        public void post() {
+            throw new IllegalStateException("The journal is gone");
+        }
+
+        @Override
+        public Set<Entry> getEntries() {
+            return Collections.emptySet();
+        }
+    }
+
+    /*
+     * Takes the results, requesting no more than told to
+     */
+    private static final class Results implements Flow.Subscriber<PostingResult> {
+
+        private final long initialDemand;
+
+        private final List<PostingResult> received = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private volatile Flow.Subscription subscription;
+
+        private Results(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+
+            this.subscription = subscription;
+
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(PostingResult result) {
+            received.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}